@@ -3,7 +3,9 @@ package ai.wanaku.code.engine.camel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import io.grpc.Grpc;
@@ -28,14 +30,30 @@ import ai.wanaku.capabilities.sdk.runtime.camel.init.InitializerFactory;
 import ai.wanaku.capabilities.sdk.security.TokenEndpoint;
 import ai.wanaku.capabilities.sdk.services.ServicesHttpClient;
 import ai.wanaku.code.engine.camel.codegen.CodeGenDiscoveryCallback;
-import ai.wanaku.code.engine.camel.codegen.CodeGenToolService;
+import ai.wanaku.code.engine.camel.codegen.CodeGenResourceLoader;
+import ai.wanaku.code.engine.camel.codegen.KameletDependencyScanner;
+import ai.wanaku.code.engine.camel.context.CamelContextPool;
+import ai.wanaku.code.engine.camel.context.ContextProfile;
+import ai.wanaku.code.engine.camel.context.ContextReserve;
+import ai.wanaku.code.engine.camel.context.RouteCache;
+import ai.wanaku.code.engine.camel.context.SharedThreadPools;
+import ai.wanaku.code.engine.camel.downloader.ArtifactStore;
+import ai.wanaku.code.engine.camel.downloader.DependencyCache;
+import ai.wanaku.code.engine.camel.downloader.DependencyLockfiles;
+import ai.wanaku.code.engine.camel.downloader.DependencyPrefetcher;
 import ai.wanaku.code.engine.camel.grpc.CodeExecutorService;
 import ai.wanaku.code.engine.camel.grpc.CodeGenToolInvokerService;
+import ai.wanaku.code.engine.camel.grpc.ExecutionWatchdog;
+import ai.wanaku.code.engine.camel.limiter.AdaptiveConcurrencyLimiter;
+import ai.wanaku.code.engine.camel.session.ExecutionSessionManager;
+import ai.wanaku.code.engine.camel.util.ExecutorModel;
+import ai.wanaku.code.engine.camel.util.StatsReporter;
 import ai.wanaku.code.engine.camel.util.VersionHelper;
 import picocli.CommandLine;
 
 public class CamelEngineMain implements Callable<Integer> {
     private static final Logger LOG = LoggerFactory.getLogger(CamelEngineMain.class);
+    private static final int INITIAL_CONCURRENCY_LIMIT = 4;
 
     @CommandLine.Option(
             names = {"-h", "--help"},
@@ -135,8 +153,170 @@ public class CamelEngineMain implements Callable<Integer> {
             required = true)
     private String codegenPackage;
 
+    @CommandLine.Option(
+            names = {"--context-pool-size"},
+            description = "Maximum number of idle Camel contexts kept per dependency set (0 disables pooling)",
+            defaultValue = "0")
+    private int contextPoolSize;
+
+    @CommandLine.Option(
+            names = {"--context-pool-idle-timeout"},
+            description = "Seconds an idle pooled Camel context is kept before it is stopped",
+            defaultValue = "300")
+    private long contextPoolIdleTimeout;
+
+    @CommandLine.Option(
+            names = {"--route-cache-size"},
+            description = "Maximum number of loaded route sets kept for repeated submissions (0 disables the cache)",
+            defaultValue = "0")
+    private int routeCacheSize;
+
+    @CommandLine.Option(
+            names = {"--context-profile"},
+            description = "Configuration of the Camel contexts running executions: ${COMPLETION-CANDIDATES}",
+            defaultValue = "default")
+    private ContextProfile contextProfile;
+
+    @CommandLine.Option(
+            names = {"--context-reserve-size"},
+            description = "Number of started, route-less Camel contexts kept ready for new dependency sets "
+                    + "(0 disables the reserve)",
+            defaultValue = "0")
+    private int contextReserveSize;
+
+    @CommandLine.Option(
+            names = {"--dependency-cache-size"},
+            description = "Maximum number of unused resolved dependency sets kept with their class loader "
+                    + "(0 disables the cache)",
+            defaultValue = "16")
+    private int dependencyCacheSize;
+
+    @CommandLine.Option(
+            names = {"--artifact-store"},
+            description = "Resolve dependencies through a local Maven repository under the data directory, "
+                    + "contacting the configured repositories only for missing artifacts",
+            defaultValue = "false")
+    private boolean artifactStoreEnabled;
+
+    @CommandLine.Option(
+            names = {"--offline"},
+            description = "Never contact remote Maven repositories, dependencies must already be in the local "
+                    + "artifact store",
+            defaultValue = "false")
+    private boolean offline;
+
+    @CommandLine.Option(
+            names = {"--download-parallelism"},
+            description = "Maximum number of dependencies downloaded from remote Maven repositories at the same time "
+                    + "by the artifact store",
+            defaultValue = "4")
+    private int downloadParallelism;
+
+    @CommandLine.Option(
+            names = {"--dependency-lockfiles"},
+            description = "Record resolved dependency sets in lockfiles under the data directory, so their class "
+                    + "path is rebuilt without resolution after a restart",
+            negatable = true,
+            defaultValue = "true",
+            fallbackValue = "true")
+    private boolean dependencyLockfiles;
+
+    @CommandLine.Option(
+            names = {"--prefetch-kamelet-dependencies"},
+            description = "Resolve the dependencies of the code generation kamelets into the local artifact store "
+                    + "in the background at startup, unless offline",
+            defaultValue = "false")
+    private boolean prefetchKameletDependencies;
+
+    @CommandLine.Option(
+            names = {"--codegen-cache-bytes"},
+            description = "Byte budget of the in-memory cache of kamelet and template contents served by the code "
+                    + "generation tools (0 disables the cache)",
+            defaultValue = "8388608")
+    private long codegenCacheBytes;
+
+    @CommandLine.Option(
+            names = {"--stats-interval"},
+            description = "Seconds between cache and pool statistics reports in the log (0 disables reporting)",
+            defaultValue = "0")
+    private long statsInterval;
+
+    @CommandLine.Option(
+            names = {"--routes-in-memory"},
+            description = "Load submitted routes from memory instead of writing them to a per-request workspace, "
+                    + "unless they use relative file: or resource:file: locations",
+            negatable = true,
+            defaultValue = "true",
+            fallbackValue = "true")
+    private boolean routesInMemory;
+
+    @CommandLine.Option(
+            names = {"--executor-model"},
+            description = "Threading model for gRPC calls and route thread pools: ${COMPLETION-CANDIDATES}",
+            defaultValue = "platform")
+    private ExecutorModel executorModel;
+
+    @CommandLine.Option(
+            names = {"--route-threads"},
+            description = "Maximum number of engine threads running split, multicast and other work of all execution "
+                    + "routes at the same time, beyond which that work runs in the calling thread (0 lets each "
+                    + "Camel context create its own threads)",
+            defaultValue = "0")
+    private int routeThreads;
+
+    @CommandLine.Option(
+            names = {"--route-scheduler-threads"},
+            description = "Number of engine threads running the scheduled tasks of all execution routes",
+            defaultValue = "4")
+    private int routeSchedulerThreads;
+
+    @CommandLine.Option(
+            names = {"--max-concurrent-executions"},
+            description = "Upper bound of the adaptive concurrency limit for executions (0 disables admission control)",
+            defaultValue = "0")
+    private int maxConcurrentExecutions;
+
+    @CommandLine.Option(
+            names = {"--execution-queue-size"},
+            description = "Maximum number of executions waiting for the concurrency limit before new ones are rejected",
+            defaultValue = "32")
+    private int executionQueueSize;
+
+    @CommandLine.Option(
+            names = {"--execution-timeout"},
+            description =
+                    "Seconds an execution may run before it is aborted, on top of the client deadline (0 for no limit)",
+            defaultValue = "0")
+    private long executionTimeout;
+
+    @CommandLine.Option(
+            names = {"--reply-chunk-size"},
+            description = "Maximum number of characters per reply when a request asks for the chunked output mode",
+            defaultValue = "65536")
+    private int replyChunkSize;
+
+    @CommandLine.Option(
+            names = {"--batch-max-parallelism"},
+            description = "Maximum number of bodies of a batch execution processed concurrently",
+            defaultValue = "8")
+    private int batchMaxParallelism;
+
+    @CommandLine.Option(
+            names = {"--max-sessions"},
+            description = "Maximum number of open execution sessions (0 disables sessions)",
+            defaultValue = "0")
+    private int maxSessions;
+
+    @CommandLine.Option(
+            names = {"--session-idle-timeout"},
+            description = "Seconds an unused execution session is kept before it is closed",
+            defaultValue = "600")
+    private long sessionIdleTimeout;
+
     public static void main(String[] args) {
-        int exitCode = new CommandLine(new CamelEngineMain()).execute(args);
+        int exitCode = new CommandLine(new CamelEngineMain())
+                .setCaseInsensitiveEnumValuesAllowed(true)
+                .execute(args);
 
         System.exit(exitCode);
     }
@@ -195,7 +375,7 @@ public class CamelEngineMain implements Callable<Integer> {
 
         // 5. Create code generation discovery callback
         CodeGenDiscoveryCallback codeGenCallback =
-                new CodeGenDiscoveryCallback(codegenPackage, servicesHttpClient, dataDirPath, name);
+                new CodeGenDiscoveryCallback(codegenPackage, servicesHttpClient, dataDirPath, name, codegenCacheBytes);
 
         // 6. Create ServiceTarget and RegistrationManager with callback
         final ServiceTarget serviceTarget = newServiceTarget();
@@ -209,15 +389,93 @@ public class CamelEngineMain implements Callable<Integer> {
             return 1;
         }
 
-        CodeGenToolService codeGenToolService = codeGenCallback.getToolService();
+        SharedThreadPools routeThreadPools =
+                routeThreads > 0 ? new SharedThreadPools(routeThreads, routeSchedulerThreads, executorModel) : null;
+        ContextReserve contextReserve = new ContextReserve(contextReserveSize, contextProfile, routeThreadPools);
+        // Offline resolution is only possible from the local artifact store
+        ArtifactStore artifactStore = artifactStoreEnabled || offline
+                ? new ArtifactStore(
+                        dataDirPath.resolve("repository"),
+                        offline,
+                        downloadParallelism,
+                        dependencyLockfiles
+                                ? new DependencyLockfiles(dataDirPath.resolve("locks"))
+                                : DependencyLockfiles.disabled())
+                : null;
+        DependencyPrefetcher prefetcher = null;
+        if (prefetchKameletDependencies && offline) {
+            LOG.info("Not prefetching kamelet dependencies in offline mode");
+        } else if (artifactStore != null && prefetchKameletDependencies) {
+            prefetcher = new DependencyPrefetcher(artifactStore, repositories);
+            prefetcher.start(() -> new KameletDependencyScanner().scan(codeGenCallback.getResourceLoader()));
+        }
+        DependencyCache dependencyCache = new DependencyCache(
+                dependencyCacheSize, artifactStore != null ? artifactStore::resolve : DependencyCache::download);
+        CamelContextPool contextPool = new CamelContextPool(
+                contextPoolSize, Duration.ofSeconds(contextPoolIdleTimeout), contextReserve, dependencyCache);
+        RouteCache routeCache = new RouteCache(routeCacheSize, contextPool);
+
+        StatsReporter statsReporter = new StatsReporter(Duration.ofSeconds(statsInterval));
+        statsReporter.register("Route cache", routeCache::getStats);
+        statsReporter.register("Idle pooled contexts", contextPool::getIdleCount);
+        statsReporter.register("Context reserve", contextReserve::getStats);
+        if (routeThreadPools != null) {
+            statsReporter.register("Shared route threads", routeThreadPools::getStats);
+        }
+        statsReporter.register("Dependency cache", dependencyCache::getStats);
+        // A registration may load the package again, so the current loader is reported
+        statsReporter.register("Code generation content cache", () -> {
+            CodeGenResourceLoader resourceLoader = codeGenCallback.getResourceLoader();
+            return resourceLoader != null ? resourceLoader.getContentCacheStats() : null;
+        });
+        if (artifactStore != null) {
+            statsReporter.register("Artifact downloads", artifactStore::getStats);
+        }
+
+        AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(
+                Math.min(maxConcurrentExecutions, INITIAL_CONCURRENCY_LIMIT),
+                1,
+                maxConcurrentExecutions,
+                executionQueueSize);
+        statsReporter.register("Concurrency limiter", concurrencyLimiter::getStats);
+
+        ExecutionWatchdog watchdog = new ExecutionWatchdog(Duration.ofSeconds(executionTimeout));
+        statsReporter.register("Timed out executions", watchdog::getTimeoutCount);
+
+        ExecutionSessionManager sessionManager =
+                new ExecutionSessionManager(maxSessions, Duration.ofSeconds(sessionIdleTimeout), contextPool::release);
+        statsReporter.register("Open execution sessions", sessionManager::size);
+        statsReporter.start();
+
+        LOG.info("Using the {} executor model", executorModel);
+        // Execution pipelines stay on platform threads whatever the model, see ExecutorModel
+        ExecutorService executionExecutor = CodeExecutorService.newExecutionExecutor();
+        // The default gRPC executor is already a cached pool of platform threads
+        ExecutorService grpcExecutor =
+                executorModel == ExecutorModel.VIRTUAL ? executorModel.newExecutor("cee-grpc-") : null;
 
         try {
             // 8. Create and start gRPC server with CodeExecutorService and ToolInvokerService
             final ServerBuilder<?> serverBuilder =
                     Grpc.newServerBuilderForPort(grpcPort, InsecureServerCredentials.create());
+            if (grpcExecutor != null) {
+                serverBuilder.executor(grpcExecutor);
+            }
             final Server server = serverBuilder
-                    .addService(new CodeExecutorService(servicesHttpClient, dataDirPath, repositories))
-                    .addService(new CodeGenToolInvokerService(codeGenToolService))
+                    .addService(new CodeExecutorService(
+                            servicesHttpClient,
+                            dataDirPath,
+                            repositories,
+                            contextPool,
+                            routeCache,
+                            routesInMemory,
+                            executionExecutor,
+                            concurrencyLimiter,
+                            watchdog,
+                            replyChunkSize,
+                            batchMaxParallelism,
+                            sessionManager))
+                    .addService(new CodeGenToolInvokerService(codeGenCallback::getToolService))
                     .addService(new ProvisionBase(name))
                     .build();
 
@@ -227,6 +485,25 @@ public class CamelEngineMain implements Callable<Integer> {
             server.awaitTermination();
         } finally {
             registrationManager.deregister();
+            executionExecutor.shutdown();
+            if (grpcExecutor != null) {
+                grpcExecutor.shutdown();
+            }
+            watchdog.close();
+            statsReporter.close();
+            sessionManager.close();
+            routeCache.close();
+            contextPool.close();
+            contextReserve.close();
+            if (routeThreadPools != null) {
+                routeThreadPools.close();
+            }
+            if (prefetcher != null) {
+                prefetcher.close();
+            }
+            if (artifactStore != null) {
+                artifactStore.close();
+            }
         }
 
         return 0;
@@ -8,73 +8,194 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-
 import org.apache.camel.CamelContext;
-import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.ErrorHandlerFactory;
+import org.apache.camel.model.ModelCamelContext;
+import org.apache.camel.spi.PropertiesComponent;
+import org.apache.camel.spi.Resource;
+import org.apache.camel.spi.ShutdownStrategy;
+import org.apache.camel.support.PluginHelper;
+import org.apache.camel.support.ResourceHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-
-import ai.wanaku.capabilities.sdk.maven.GAV;
-import ai.wanaku.capabilities.sdk.maven.WanakuMavenDownloader;
 import ai.wanaku.capabilities.sdk.runtime.camel.downloader.ResourceType;
 import ai.wanaku.capabilities.sdk.runtime.camel.util.WanakuRoutesLoader;
+import ai.wanaku.code.engine.camel.context.ContextProfile;
+import ai.wanaku.code.engine.camel.context.ContextReserve;
+import ai.wanaku.code.engine.camel.downloader.DependencyCache;
+import ai.wanaku.code.engine.camel.downloader.DependencyCanonicalizer;
 
 public class WanakuCamelManager {
     private static final Logger LOG = LoggerFactory.getLogger(WanakuCamelManager.class);
+    private static final String IN_MEMORY_ROUTES_LOCATION = "mem:routes.yaml";
+    private static final long ABORT_TIMEOUT_SECONDS = 1;
 
     private final CamelContext context;
-    private final String routesPath;
-    private List<GAV> gavs = new ArrayList<>();
+    private final String dependencyKey;
+    private DependencyCache.Resolution resolution;
+    private final ContextState initialState;
 
     public WanakuCamelManager(Map<ResourceType, Path> downloadedResources, String repositoriesList) throws Exception {
-        this.routesPath = downloadedResources.get(ResourceType.ROUTES_REF).toString();
+        final Path routesPath = downloadedResources.get(ResourceType.ROUTES_REF);
+        List<String> dependencies = Collections.emptyList();
         if (downloadedResources.containsKey(ResourceType.DEPENDENCY_REF)) {
             String dependenciesPath =
                     downloadedResources.get(ResourceType.DEPENDENCY_REF).toString();
             try {
                 final List<String> depLines = Files.readAllLines(Path.of(dependenciesPath));
-                this.gavs = depLines.stream()
-                        .filter(l -> !l.startsWith("#"))
-                        .map(GAV::parse)
-                        .collect(Collectors.toList());
+                dependencies = DependencyCanonicalizer.engine()
+                        .canonicalize(depLines.stream()
+                                .filter(l -> !l.startsWith("#"))
+                                .collect(Collectors.toList()));
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
+        this.dependencyKey = String.join(",", dependencies);
 
-        WanakuMavenDownloader mavenDownloader = new WanakuMavenDownloader(WanakuCamelManager.class.getClassLoader());
-        mavenDownloader.download(gavs);
-
-        context = new DefaultCamelContext();
-        context.setApplicationContextClassLoader(mavenDownloader.getClassLoader());
-        loadRoutes();
+        this.resolution = DependencyCache.disabled().acquire(dependencies, null);
+        try {
+            context = ContextProfile.DEFAULT.newContext(resolution.getClassLoader());
+            this.initialState = ContextState.of(context);
+            loadRoutes(routesPath);
+        } catch (Exception e) {
+            stopAfterFailure(e);
+            throw e;
+        }
     }
 
     public WanakuCamelManager(Path routesPath, String dependenciesList, String repositoriesList) throws Exception {
-        this.routesPath = routesPath.toString();
+        this(dependenciesList, repositoriesList);
+
+        try {
+            loadRoutes(routesPath);
+        } catch (Exception e) {
+            stopAfterFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a manager with a started CamelContext that has no routes yet.
+     *
+     * <p>Routes are added later with {@link #loadRoutes(Path)} and can be removed again with
+     * {@link #removeRoutes()}, which allows the same context to serve several executions that
+     * share the same dependencies.
+     *
+     * @param dependenciesList comma or newline separated list of Maven coordinates (may be null)
+     * @param repositoriesList the Maven repositories to use (may be null)
+     * @throws Exception if the dependencies cannot be resolved or the context fails to start
+     */
+    public WanakuCamelManager(String dependenciesList, String repositoriesList) throws Exception {
+        this(dependenciesList, repositoriesList, ContextReserve.disabled(ContextProfile.DEFAULT));
+    }
+
+    /**
+     * Creates a manager with a started CamelContext that has no routes yet, configured with the given
+     * profile.
+     *
+     * @param dependenciesList comma or newline separated list of Maven coordinates (may be null)
+     * @param repositoriesList the Maven repositories to use (may be null)
+     * @param profile the profile applied to the context before it starts
+     * @throws Exception if the dependencies cannot be resolved or the context fails to start
+     */
+    public WanakuCamelManager(String dependenciesList, String repositoriesList, ContextProfile profile)
+            throws Exception {
+        this(dependenciesList, repositoriesList, ContextReserve.disabled(profile));
+    }
+
+    /**
+     * Creates a manager with a started CamelContext that has no routes yet, taken from the given reserve
+     * when it has one available.
+     *
+     * @param dependenciesList comma or newline separated list of Maven coordinates (may be null)
+     * @param repositoriesList the Maven repositories to use (may be null)
+     * @param reserve the reserve providing the context
+     * @throws Exception if the dependencies cannot be resolved or the context fails to start
+     */
+    public WanakuCamelManager(String dependenciesList, String repositoriesList, ContextReserve reserve)
+            throws Exception {
+        this(dependenciesList, repositoriesList, reserve, DependencyCache.disabled());
+    }
+
+    /**
+     * Creates a manager with a started CamelContext that has no routes yet, taken from the given reserve
+     * when it has one available.
+     *
+     * <p>Only the dependencies are resolved here, or looked up in the dependency cache: a reserved
+     * context is already started, it just gets the application class loader of the dependencies.
+     *
+     * @param dependenciesList comma or newline separated list of Maven coordinates (may be null)
+     * @param repositoriesList the Maven repositories to use (may be null)
+     * @param reserve the reserve providing the context
+     * @param dependencyCache the cache of resolved dependency sets
+     * @throws Exception if the dependencies cannot be resolved or the context fails to start
+     */
+    public WanakuCamelManager(
+            String dependenciesList, String repositoriesList, ContextReserve reserve, DependencyCache dependencyCache)
+            throws Exception {
+        final long startNanos = System.nanoTime();
+        final List<String> dependencies = parseDependencies(dependenciesList);
+        this.dependencyKey = toDependencyKey(dependencies);
 
-        if (dependenciesList != null && !dependenciesList.isBlank()) {
-            this.gavs = Arrays.stream(dependenciesList.split("[,\\n]"))
-                    .map(String::trim)
-                    .filter(s -> !s.isEmpty())
-                    .filter(s -> !s.startsWith("#"))
-                    .map(GAV::parse)
-                    .collect(Collectors.toList());
+        this.resolution = dependencyCache.acquire(dependencies, repositoriesList);
+        try {
+            this.context = reserve.take(resolution.getClassLoader());
+        } catch (RuntimeException e) {
+            resolution.release();
+            throw e;
         }
+        this.initialState = ContextState.of(context);
+        reserve.getProfile().logStartup(context, startNanos);
+    }
 
-        WanakuMavenDownloader mavenDownloader = new WanakuMavenDownloader(WanakuCamelManager.class.getClassLoader());
-        mavenDownloader.download(gavs);
+    /**
+     * Parses a comma or newline separated dependency list, dropping blanks and comments, and
+     * canonicalizes it with {@link DependencyCanonicalizer#engine()}.
+     *
+     * @param dependenciesList the raw dependency list (may be null)
+     * @return the canonical dependency coordinates
+     */
+    public static List<String> parseDependencies(String dependenciesList) {
+        if (dependenciesList == null || dependenciesList.isBlank()) {
+            return Collections.emptyList();
+        }
 
-        this.context = new DefaultCamelContext();
-        context.setApplicationContextClassLoader(mavenDownloader.getClassLoader());
-        loadRoutes();
+        return DependencyCanonicalizer.engine()
+                .canonicalize(Arrays.stream(dependenciesList.split("[,\\n]"))
+                        .map(String::trim)
+                        .filter(s -> !s.startsWith("#"))
+                        .collect(Collectors.toList()));
     }
 
-    private void loadRoutes() throws Exception {
+    /**
+     * Returns the key identifying a dependency list, so that equivalent lists map to the same key.
+     *
+     * @param dependenciesList the raw dependency list (may be null)
+     * @return the normalized dependency key
+     */
+    public static String dependencyKey(String dependenciesList) {
+        return toDependencyKey(parseDependencies(dependenciesList));
+    }
+
+    private static String toDependencyKey(List<String> dependencies) {
+        return String.join(",", dependencies);
+    }
+
+    /**
+     * Loads the routes from the given file and starts the context if it is not running yet.
+     *
+     * @param routesPath the path to the routes file
+     * @throws Exception if the routes cannot be loaded or none were found
+     */
+    public void loadRoutes(Path routesPath) throws Exception {
         WanakuRoutesLoader routesLoader = new WanakuRoutesLoader();
 
-        String routeFileUrl = Path.of(routesPath).toUri().toString();
+        String routeFileUrl = routesPath.toUri().toString();
         routesLoader.loadRoute(context, routeFileUrl);
         context.start();
 
@@ -83,13 +204,176 @@ public class WanakuCamelManager {
         }
     }
 
+    /**
+     * Loads YAML routes straight from memory and starts the context if it is not running yet.
+     *
+     * <p>This avoids writing the routes to a workspace only for the loader to read them back.
+     *
+     * @param code the YAML route definitions
+     * @throws Exception if the routes cannot be loaded or none were found
+     */
+    public void loadRoutesFromString(String code) throws Exception {
+        // The location is only used to select the YAML DSL loader and in error messages
+        Resource resource = ResourceHelper.fromString(IN_MEMORY_ROUTES_LOCATION, code);
+        PluginHelper.getRoutesLoader(context).loadRoutes(resource);
+        context.start();
+
+        if (context.getRoutes().isEmpty()) {
+            throw new RuntimeException("Failed to load routes from " + IN_MEMORY_ROUTES_LOCATION);
+        }
+    }
+
+    /**
+     * Stops and removes every route from the context, leaving it started and empty.
+     *
+     * @return true if the context is clean and can be reused, false if it should be discarded
+     */
+    public boolean removeRoutes() {
+        if (!context.isStarted()) {
+            return false;
+        }
+
+        try {
+            context.getRouteController().stopAllRoutes();
+            context.getRouteController().removeAllRoutes();
+
+            ModelCamelContext model = (ModelCamelContext) context;
+            model.removeRouteDefinitions(new ArrayList<>(model.getRouteDefinitions()));
+
+            // Anything else the routes registered or changed would leak into the next execution
+            if (!context.getRoutes().isEmpty()
+                    || !model.getRouteConfigurationDefinitions().isEmpty()
+                    || !model.getRouteTemplateDefinitions().isEmpty()
+                    || !model.getRestDefinitions().isEmpty()
+                    || !model.getCustomBeans().isEmpty()) {
+                return false;
+            }
+            if (!ContextState.of(context).equals(initialState)) {
+                LOG.debug("Discarding Camel context whose error handler, global options or properties changed");
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            LOG.warn("Unable to remove routes from Camel context: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * The context-wide settings routes can change, compared before a context is reused.
+     *
+     * @param errorHandlerFactory the context error handler, compared by identity
+     * @param globalOptions the global options
+     * @param properties the properties loaded from the property sources
+     * @param addedProperties the initial, override and local properties, which are not property sources
+     * @param locations the property locations
+     */
+    private record ContextState(
+            ErrorHandlerFactory errorHandlerFactory,
+            Map<String, String> globalOptions,
+            Properties properties,
+            List<Properties> addedProperties,
+            List<String> locations) {
+
+        static ContextState of(CamelContext context) {
+            PropertiesComponent component = context.getPropertiesComponent();
+            List<Properties> addedProperties = new ArrayList<>();
+            if (component instanceof org.apache.camel.component.properties.PropertiesComponent properties) {
+                addedProperties.add(copyOf(properties.getInitialProperties()));
+                addedProperties.add(copyOf(properties.getOverrideProperties()));
+            }
+            addedProperties.add(copyOf(component.getLocalProperties()));
+
+            return new ContextState(
+                    context.getCamelContextExtension().getErrorHandlerFactory(),
+                    Map.copyOf(context.getGlobalOptions()),
+                    component.loadProperties(),
+                    addedProperties,
+                    List.copyOf(component.getLocations()));
+        }
+
+        private static Properties copyOf(Properties properties) {
+            Properties copy = new Properties();
+            if (properties != null) {
+                copy.putAll(properties);
+            }
+            return copy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            // A replaced error handler may well be equal to the default one
+            return o instanceof ContextState other
+                    && errorHandlerFactory == other.errorHandlerFactory
+                    && globalOptions.equals(other.globalOptions)
+                    && properties.equals(other.properties)
+                    && addedProperties.equals(other.addedProperties)
+                    && locations.equals(other.locations);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(errorHandlerFactory), globalOptions, properties);
+        }
+    }
+
+    /**
+     * Returns the normalized key of the dependencies this context was created with.
+     *
+     * @return the dependency key (empty when there are no dependencies)
+     */
+    public String getDependencyKey() {
+        return dependencyKey;
+    }
+
     public CamelContext getCamelContext() {
         return context;
     }
 
     public void stop() {
-        if (context != null) {
+        try {
+            if (context != null) {
+                context.stop();
+            }
+        } finally {
+            releaseDependencies();
+        }
+    }
+
+    /**
+     * Stops the context without waiting for in-flight exchanges to complete.
+     *
+     * <p>Routes that are still processing after a short grace period are forcibly shut down and their
+     * threads interrupted. The context cannot be reused afterwards.
+     */
+    public void abort() {
+        if (context == null) {
+            return;
+        }
+
+        ShutdownStrategy shutdownStrategy = context.getShutdownStrategy();
+        shutdownStrategy.setTimeout(ABORT_TIMEOUT_SECONDS);
+        shutdownStrategy.setTimeUnit(TimeUnit.SECONDS);
+        shutdownStrategy.setShutdownNowOnTimeout(true);
+        shutdownStrategy.setSuppressLoggingOnTimeout(true);
+        try {
             context.stop();
+        } finally {
+            releaseDependencies();
+        }
+    }
+
+    private void stopAfterFailure(Exception failure) {
+        try {
+            stop();
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void releaseDependencies() {
+        if (resolution != null) {
+            resolution.release();
         }
     }
 }
@@ -30,18 +30,36 @@ public class CodeGenDiscoveryCallback implements DiscoveryCallback {
     private final ServicesHttpClient servicesHttpClient;
     private final Path dataDirPath;
     private final String serviceName;
+    private final long contentCacheBytes;
     private final CountDownLatch initLatch = new CountDownLatch(1);
 
-    private CodeGenToolService toolService;
+    // Replaced on every registration, while gRPC calls read them
+    private volatile CodeGenResourceLoader resourceLoader;
+    private volatile CodeGenToolService toolService;
     private CodeGenToolRegistrar toolRegistrar;
     private Path packagePath;
 
     public CodeGenDiscoveryCallback(
             String codegenPackageUri, ServicesHttpClient servicesHttpClient, Path dataDirPath, String serviceName) {
+        this(
+                codegenPackageUri,
+                servicesHttpClient,
+                dataDirPath,
+                serviceName,
+                CodeGenResourceLoader.DEFAULT_CONTENT_CACHE_BYTES);
+    }
+
+    public CodeGenDiscoveryCallback(
+            String codegenPackageUri,
+            ServicesHttpClient servicesHttpClient,
+            Path dataDirPath,
+            String serviceName,
+            long contentCacheBytes) {
         this.codegenPackageUri = codegenPackageUri;
         this.servicesHttpClient = servicesHttpClient;
         this.dataDirPath = dataDirPath;
         this.serviceName = serviceName;
+        this.contentCacheBytes = contentCacheBytes;
     }
 
     @Override
@@ -72,7 +90,7 @@ public class CodeGenDiscoveryCallback implements DiscoveryCallback {
                 return;
             }
 
-            CodeGenResourceLoader resourceLoader = CodeGenResourceLoader.load(packagePath);
+            resourceLoader = CodeGenResourceLoader.load(packagePath, contentCacheBytes);
             toolService = new CodeGenToolService(resourceLoader);
 
             toolRegistrar = new CodeGenToolRegistrar(servicesHttpClient, resourceLoader, serviceName);
@@ -181,6 +199,15 @@ public class CodeGenDiscoveryCallback implements DiscoveryCallback {
         return toolService;
     }
 
+    /**
+     * Returns the loader of the package resources.
+     *
+     * @return the resource loader, or null if not initialized
+     */
+    public CodeGenResourceLoader getResourceLoader() {
+        return resourceLoader;
+    }
+
     /**
      * Returns the path where the package was extracted.
      *
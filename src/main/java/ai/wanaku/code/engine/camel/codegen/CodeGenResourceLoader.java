@@ -2,6 +2,7 @@ package ai.wanaku.code.engine.camel.codegen;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashMap;
@@ -20,6 +21,12 @@ import org.slf4j.LoggerFactory;
  *   <li>Resolving the templates directory</li>
  *   <li>Reading kamelet content on demand</li>
  * </ul>
+ *
+ * <p>A {@link KameletSearchIndex} of the available services and a {@link KameletNameIndex} of the kamelet
+ * names are built when the package is loaded.
+ * Kamelet and template contents are kept in a {@link ContentCache} once read, so repeated tool calls
+ * only check that the files did not change. A package registered again is loaded into a new loader,
+ * with an empty cache.
  */
 public class CodeGenResourceLoader {
     private static final Logger LOG = LoggerFactory.getLogger(CodeGenResourceLoader.class);
@@ -39,33 +46,60 @@ public class CodeGenResourceLoader {
     /** File extension for kamelet files. */
     public static final String KAMELET_EXTENSION = ".kamelet.yaml";
 
+    /** Prefix of the kamelet services in the configuration. */
+    public static final String KAMELET_PREFIX = "kamelet:";
+
+    /** Default byte budget of the content cache. */
+    public static final long DEFAULT_CONTENT_CACHE_BYTES = 8L * 1024 * 1024;
+
     private final Path packageDir;
     private final CodeGenConfig config;
     private final Path kameletsDir;
     private final Path templatesDir;
     private final Map<String, Path> kameletIndex;
+    private final KameletSearchIndex searchIndex;
+    private final KameletNameIndex nameIndex;
+    private final ContentCache contentCache;
 
     private CodeGenResourceLoader(
             Path packageDir,
             CodeGenConfig config,
             Path kameletsDir,
             Path templatesDir,
-            Map<String, Path> kameletIndex) {
+            Map<String, Path> kameletIndex,
+            KameletSearchIndex searchIndex,
+            ContentCache contentCache) {
         this.packageDir = packageDir;
         this.config = config;
         this.kameletsDir = kameletsDir;
         this.templatesDir = templatesDir;
         this.kameletIndex = Collections.unmodifiableMap(kameletIndex);
+        this.searchIndex = searchIndex;
+        this.nameIndex = new KameletNameIndex(kameletIndex.keySet());
+        this.contentCache = contentCache;
     }
 
     /**
-     * Loads resources from the specified package directory.
+     * Loads resources from the specified package directory, caching up to
+     * {@link #DEFAULT_CONTENT_CACHE_BYTES} of contents.
      *
      * @param packageDir the root directory of the extracted package
      * @return a new CodeGenResourceLoader instance
      * @throws IOException if resources cannot be loaded
      */
     public static CodeGenResourceLoader load(Path packageDir) throws IOException {
+        return load(packageDir, DEFAULT_CONTENT_CACHE_BYTES);
+    }
+
+    /**
+     * Loads resources from the specified package directory.
+     *
+     * @param packageDir the root directory of the extracted package
+     * @param contentCacheBytes the byte budget of the kamelet and template content cache (0 disables it)
+     * @return a new CodeGenResourceLoader instance
+     * @throws IOException if resources cannot be loaded
+     */
+    public static CodeGenResourceLoader load(Path packageDir, long contentCacheBytes) throws IOException {
         LOG.info("Loading code generation resources from: {}", packageDir);
 
         if (!Files.isDirectory(packageDir)) {
@@ -97,7 +131,46 @@ public class CodeGenResourceLoader {
         Map<String, Path> kameletIndex = indexKamelets(kameletsDir);
         LOG.info("Indexed {} kamelets", kameletIndex.size());
 
-        return new CodeGenResourceLoader(packageDir, config, kameletsDir, templatesDir, kameletIndex);
+        return new CodeGenResourceLoader(
+                packageDir,
+                config,
+                kameletsDir,
+                templatesDir,
+                kameletIndex,
+                buildSearchIndex(config, kameletIndex),
+                new ContentCache(contentCacheBytes));
+    }
+
+    private static KameletSearchIndex buildSearchIndex(CodeGenConfig config, Map<String, Path> kameletIndex) {
+        // Only the services the package exposes can be found, whether or not it ships their kamelet
+        Map<String, String> kamelets = new HashMap<>();
+        for (String service : config.getAvailableServices()) {
+            String name = kameletName(service);
+            Path kameletPath = kameletIndex.get(name);
+            if (kameletPath == null) {
+                LOG.debug("Indexing only the name of service {}, the package has no kamelet for it", service);
+                kamelets.put(name, null);
+                continue;
+            }
+
+            try {
+                kamelets.put(name, Files.readString(kameletPath));
+            } catch (IOException e) {
+                LOG.warn("Indexing only the name of kamelet {}: {}", name, e.getMessage());
+                kamelets.put(name, null);
+            }
+        }
+        return KameletSearchIndex.build(kamelets);
+    }
+
+    /**
+     * Returns the kamelet name of an available service.
+     *
+     * @param service the service, as listed in the configuration
+     * @return the service without its {@link #KAMELET_PREFIX}
+     */
+    public static String kameletName(String service) {
+        return service.startsWith(KAMELET_PREFIX) ? service.substring(KAMELET_PREFIX.length()) : service;
     }
 
     private static Map<String, Path> indexKamelets(Path kameletsDir) throws IOException {
@@ -191,7 +264,7 @@ public class CodeGenResourceLoader {
         }
 
         LOG.debug("Reading kamelet: {}", name);
-        return Files.readString(kameletPath);
+        return contentCache.read(kameletPath);
     }
 
     /**
@@ -202,12 +275,12 @@ public class CodeGenResourceLoader {
      */
     public String readOrchestrationTemplate() throws IOException {
         Path templatePath = templatesDir.resolve(ORCHESTRATION_TEMPLATE_NAME);
-        if (!Files.exists(templatePath)) {
-            throw new IOException("Orchestration template not found: " + templatePath);
-        }
-
         LOG.debug("Reading orchestration template from: {}", templatePath);
-        return Files.readString(templatePath);
+        try {
+            return contentCache.read(templatePath);
+        } catch (NoSuchFileException e) {
+            throw new IOException("Orchestration template not found: " + templatePath, e);
+        }
     }
 
     /**
@@ -216,6 +289,34 @@ public class CodeGenResourceLoader {
      * @return true if the template exists
      */
     public boolean hasOrchestrationTemplate() {
-        return Files.exists(templatesDir.resolve(ORCHESTRATION_TEMPLATE_NAME));
+        Path templatePath = templatesDir.resolve(ORCHESTRATION_TEMPLATE_NAME);
+        return Files.exists(templatePath);
+    }
+
+    /**
+     * Returns the search index of the available services, by kamelet name.
+     *
+     * @return the kamelet search index
+     */
+    public KameletSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Returns the trigram index of the kamelet names.
+     *
+     * @return the kamelet name index
+     */
+    public KameletNameIndex getNameIndex() {
+        return nameIndex;
+    }
+
+    /**
+     * Returns a snapshot of the content cache usage.
+     *
+     * @return the current content cache statistics
+     */
+    public ContentCache.Stats getContentCacheStats() {
+        return contentCache.getStats();
     }
 }
@@ -154,10 +154,28 @@ public class CodeGenToolRegistrar {
         ToolReference ref = new ToolReference();
         applyCommonSettings(ref, tool.getName(), tool.getDescription());
 
-        // Empty input schema (no parameters)
+        // Input schema with optional 'query', 'limit' and 'cursor' parameters
         InputSchema schema = new InputSchema();
         schema.setType("object");
-        schema.setProperties(Collections.emptyMap());
+
+        Map<String, Property> properties = new HashMap<>();
+        Property queryProp = new Property();
+        queryProp.setType("string");
+        queryProp.setDescription("Optional keywords to find the most relevant services instead of listing them all");
+        properties.put(SearchServicesTool.PARAM_QUERY, queryProp);
+
+        Property limitProp = new Property();
+        limitProp.setType("integer");
+        limitProp.setDescription("Optional maximum number of services to return per page (1 to "
+                + SearchServicesTool.MAX_PAGE_SIZE + ")");
+        properties.put(SearchServicesTool.PARAM_LIMIT, limitProp);
+
+        Property cursorProp = new Property();
+        cursorProp.setType("string");
+        cursorProp.setDescription("Optional cursor returned with the previous page, to get the next one");
+        properties.put(SearchServicesTool.PARAM_CURSOR, cursorProp);
+
+        schema.setProperties(properties);
         schema.setRequired(Collections.emptyList());
         ref.setInputSchema(schema);
 
@@ -168,7 +186,7 @@ public class CodeGenToolRegistrar {
         ToolReference ref = new ToolReference();
         applyCommonSettings(ref, tool.getName(), tool.getDescription());
 
-        // Input schema with 'name' parameter
+        // Input schema with 'name' and optional 'fuzzy' parameters
         InputSchema schema = new InputSchema();
         schema.setType("object");
 
@@ -178,6 +196,12 @@ public class CodeGenToolRegistrar {
         nameProp.setDescription("The name of the Kamelet to read (without .kamelet.yaml suffix)");
         properties.put(ReadKameletTool.PARAM_NAME, nameProp);
 
+        Property fuzzyProp = new Property();
+        fuzzyProp.setType("boolean");
+        fuzzyProp.setDescription(
+                "Optional, when true a misspelled name is resolved to the Kamelet clearly closest to it");
+        properties.put(ReadKameletTool.PARAM_FUZZY, fuzzyProp);
+
         schema.setProperties(properties);
         schema.setRequired(List.of(ReadKameletTool.PARAM_NAME));
         ref.setInputSchema(schema);
@@ -13,6 +13,11 @@ import ai.wanaku.code.engine.camel.codegen.tools.SearchServicesTool;
  *
  * <p>This service routes tool invocation requests to the appropriate handler based on the
  * tool name extracted from the URI ({scheme}://{toolName}).
+ *
+ * <p>The service listing only depends on the configuration of the loaded package, so it is computed
+ * once, when the service is created, and exposed by {@link #getStaticResults()}. The orchestration
+ * template is read on every call instead, from the content cache, so a template changed in place is
+ * served as it is now.
  */
 public class CodeGenToolService {
     private static final Logger LOG = LoggerFactory.getLogger(CodeGenToolService.class);
@@ -20,6 +25,7 @@ public class CodeGenToolService {
     private final SearchServicesTool searchServicesTool;
     private final ReadKameletTool readKameletTool;
     private final GenerateOrchestrationTool generateOrchestrationTool;
+    private final Map<String, String> staticResults;
     private final boolean ready;
 
     /**
@@ -31,6 +37,7 @@ public class CodeGenToolService {
         this.searchServicesTool = new SearchServicesTool(resourceLoader);
         this.readKameletTool = new ReadKameletTool(resourceLoader);
         this.generateOrchestrationTool = new GenerateOrchestrationTool(resourceLoader);
+        this.staticResults = computeStaticResults();
         this.ready = true;
         LOG.info("CodeGenToolService initialized with all tools");
     }
@@ -42,9 +49,14 @@ public class CodeGenToolService {
         this.searchServicesTool = null;
         this.readKameletTool = null;
         this.generateOrchestrationTool = null;
+        this.staticResults = Map.of();
         this.ready = false;
     }
 
+    private Map<String, String> computeStaticResults() {
+        return Map.of(SearchServicesTool.TOOL_NAME, searchServicesTool.execute());
+    }
+
     /**
      * Creates an unready service instance for when the codegen package is not available.
      *
@@ -91,30 +103,49 @@ public class CodeGenToolService {
         }
 
         return switch (toolName) {
-            case SearchServicesTool.TOOL_NAME -> executeSearchServices();
+            case SearchServicesTool.TOOL_NAME -> executeSearchServices(arguments);
             case ReadKameletTool.TOOL_NAME -> executeReadKamelet(arguments);
             case GenerateOrchestrationTool.TOOL_NAME -> executeGenerateOrchestration();
             default -> ToolResult.error("Unknown tool: " + toolName);
         };
     }
 
-    private ToolResult executeSearchServices() {
+    private ToolResult executeSearchServices(Map<String, String> arguments) {
         try {
-            String result = searchServicesTool.execute();
+            String query = arguments != null ? arguments.get(SearchServicesTool.PARAM_QUERY) : null;
+            String limit = arguments != null ? arguments.get(SearchServicesTool.PARAM_LIMIT) : null;
+            String cursor = arguments != null ? arguments.get(SearchServicesTool.PARAM_CURSOR) : null;
+            String result = searchServicesTool.execute(query, parseLimit(limit), cursor);
             return ToolResult.success(result);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Invalid request for searchServicesTool: {}", e.getMessage());
+            return ToolResult.error(e.getMessage());
         } catch (Exception e) {
             LOG.error("Error executing searchServicesTool", e);
             return ToolResult.error("Failed to search services: " + e.getMessage());
         }
     }
 
+    private static Integer parseLimit(String limit) {
+        if (limit == null || limit.isBlank()) {
+            return null;
+        }
+
+        try {
+            return Integer.valueOf(limit.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+        }
+    }
+
     private ToolResult executeReadKamelet(Map<String, String> arguments) {
         try {
             String name = arguments != null ? arguments.get(ReadKameletTool.PARAM_NAME) : null;
             if (name == null || name.isEmpty()) {
                 return ToolResult.error("Missing required parameter: " + ReadKameletTool.PARAM_NAME);
             }
-            String result = readKameletTool.execute(name);
+            String fuzzy = arguments.get(ReadKameletTool.PARAM_FUZZY);
+            String result = readKameletTool.execute(name, fuzzy != null && Boolean.parseBoolean(fuzzy.trim()));
             return ToolResult.success(result);
         } catch (IllegalArgumentException e) {
             LOG.warn("Invalid request for readKamelet: {}", e.getMessage());
@@ -138,6 +169,15 @@ public class CodeGenToolService {
         }
     }
 
+    /**
+     * Returns the results of the tools whose output never changes without arguments, by tool name.
+     *
+     * @return the precomputed results, empty if the service is not ready
+     */
+    public Map<String, String> getStaticResults() {
+        return staticResults;
+    }
+
     /**
      * Returns the SearchServicesTool instance.
      *
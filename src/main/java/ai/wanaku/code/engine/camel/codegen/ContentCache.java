@@ -0,0 +1,128 @@
+package ai.wanaku.code.engine.camel.codegen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * LRU cache of file contents bounded by the total size of their files in bytes.
+ *
+ * <p>Contents are kept decoded from UTF-8, the encoding of kamelets and templates, as the strings the
+ * tools reply with, so a hit neither copies nor decodes them again. Every read checks the modification
+ * time and size of the file, and a file changed in place, as in a local package directory, is read
+ * again. A file larger than the whole budget is read every time.
+ */
+public class ContentCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ContentCache.class);
+
+    private final long maxBytes;
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a new ContentCache.
+     *
+     * @param maxBytes the maximum total size of the cached files (0 disables the cache)
+     */
+    public ContentCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * Creates a cache that reads the files every time.
+     *
+     * @return a disabled cache
+     */
+    public static ContentCache disabled() {
+        return new ContentCache(0);
+    }
+
+    /**
+     * Returns the content of a file, reading it on a miss or when the file changed since it was cached.
+     *
+     * @param file the file to read
+     * @return the content of the file
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    public String read(Path file) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        final FileTime modified = attributes.lastModifiedTime();
+        final long size = attributes.size();
+        synchronized (entries) {
+            Entry entry = entries.get(file);
+            if (entry != null && entry.size() == size && entry.modified().equals(modified)) {
+                hits.increment();
+                return entry.content();
+            }
+        }
+
+        misses.increment();
+        // Read after the attributes, so a file changing meanwhile is only cached as older than it is
+        final String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        if (size > maxBytes) {
+            return content;
+        }
+
+        synchronized (entries) {
+            Entry previous = entries.put(file, new Entry(content, modified, size));
+            bytes += size - (previous != null ? previous.size() : 0);
+
+            Iterator<Map.Entry<Path, Entry>> it = entries.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Map.Entry<Path, Entry> eldest = it.next();
+                it.remove();
+                bytes -= eldest.getValue().size();
+                evictions.increment();
+                LOG.debug("Evicted cached content of {}", eldest.getKey());
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Drops every cached content.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache usage.
+     *
+     * @return the current cache statistics
+     */
+    public Stats getStats() {
+        synchronized (entries) {
+            return new Stats(entries.size(), bytes, hits.sum(), misses.sum(), evictions.sum());
+        }
+    }
+
+    /**
+     * Snapshot of the cache usage.
+     *
+     * @param size the number of cached files
+     * @param bytes the total size of the cached files
+     * @param hits the number of reads served from the cache
+     * @param misses the number of reads that went to the file system, including those of changed files
+     * @param evictions the number of contents evicted to stay within the budget
+     */
+    public record Stats(int size, long bytes, long hits, long misses, long evictions) {}
+
+    private record Entry(String content, FileTime modified, long size) {}
+}
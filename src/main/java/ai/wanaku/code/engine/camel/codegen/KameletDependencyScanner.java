@@ -0,0 +1,153 @@
+package ai.wanaku.code.engine.camel.codegen;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.camel.catalog.CamelCatalog;
+import org.apache.camel.catalog.DefaultCamelCatalog;
+import org.apache.camel.tooling.model.ComponentModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import ai.wanaku.code.engine.camel.downloader.DependencyCanonicalizer;
+
+/**
+ * Finds the Maven artifacts the kamelets of a code generation package need at runtime.
+ *
+ * <p>Two sources are considered: the dependencies a kamelet declares in {@code spec.dependencies}
+ * ({@code camel:name} and {@code mvn:groupId:artifactId:version}) and the component schemes of the
+ * endpoint URIs in its {@code spec.template}, which are mapped to their artifact with the Camel catalog.
+ * Artifacts already on the class path of the engine are left out, since they never need resolving.
+ */
+public class KameletDependencyScanner {
+    private static final Logger LOG = LoggerFactory.getLogger(KameletDependencyScanner.class);
+
+    private static final String CAMEL_GROUP_ID = "org.apache.camel";
+    private static final Set<String> URI_KEYS = Set.of("uri", "to", "toD", "wireTap");
+    private static final Pattern SCHEME = Pattern.compile("^([a-zA-Z][a-zA-Z0-9+.-]*):");
+
+    private final CamelCatalog catalog;
+    private final DependencyCanonicalizer canonicalizer;
+
+    /**
+     * Creates a new KameletDependencyScanner checking the class path of the engine.
+     */
+    public KameletDependencyScanner() {
+        this(new DefaultCamelCatalog(true), KameletDependencyScanner.class.getClassLoader());
+    }
+
+    /**
+     * Creates a new KameletDependencyScanner.
+     *
+     * @param catalog the catalog mapping component schemes to their artifacts
+     * @param classLoader the class loader whose artifacts need no resolution
+     */
+    public KameletDependencyScanner(CamelCatalog catalog, ClassLoader classLoader) {
+        this.catalog = catalog;
+        this.canonicalizer = new DependencyCanonicalizer(classLoader);
+    }
+
+    /**
+     * Scans every kamelet of a code generation package.
+     *
+     * @param resourceLoader the loader of the package
+     * @return the coordinates of the missing artifacts, sorted
+     */
+    public Set<String> scan(CodeGenResourceLoader resourceLoader) {
+        Set<String> coordinates = new TreeSet<>();
+        for (String name : resourceLoader.getKameletNames()) {
+            try {
+                coordinates.addAll(scan(resourceLoader.readKamelet(name)));
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Unable to scan the dependencies of kamelet {}: {}", name, e.getMessage());
+            }
+        }
+        return coordinates;
+    }
+
+    /**
+     * Scans a single kamelet definition.
+     *
+     * @param kamelet the YAML content of the kamelet
+     * @return the coordinates of the missing artifacts, sorted
+     */
+    public Set<String> scan(String kamelet) {
+        Set<String> coordinates = new TreeSet<>();
+        if (!(new Yaml(new SafeConstructor(new LoaderOptions())).load(kamelet) instanceof Map<?, ?> root)
+                || !(root.get("spec") instanceof Map<?, ?> spec)) {
+            return coordinates;
+        }
+
+        if (spec.get("dependencies") instanceof List<?> dependencies) {
+            for (Object dependency : dependencies) {
+                String coordinate = dependency instanceof String s ? toCoordinate(s) : null;
+                if (coordinate != null) {
+                    addIfMissing(coordinates, coordinate);
+                }
+            }
+        }
+
+        Set<String> schemes = new TreeSet<>();
+        collectSchemes(spec.get("template"), schemes);
+        for (String scheme : schemes) {
+            ComponentModel model = catalog.componentModel(scheme);
+            if (model == null) {
+                LOG.debug("No known component for scheme {}", scheme);
+                continue;
+            }
+            addIfMissing(coordinates, model.getGroupId() + ":" + model.getArtifactId() + ":" + model.getVersion());
+        }
+        return coordinates;
+    }
+
+    private String toCoordinate(String dependency) {
+        if (dependency.startsWith("camel:")) {
+            return CAMEL_GROUP_ID + ":camel-" + dependency.substring("camel:".length()) + ":"
+                    + catalog.getCatalogVersion();
+        }
+        if (dependency.startsWith("mvn:")) {
+            return dependency.substring("mvn:".length());
+        }
+
+        LOG.debug("Ignoring unsupported kamelet dependency {}", dependency);
+        return null;
+    }
+
+    private static void collectSchemes(Object node, Set<String> schemes) {
+        if (node instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (entry.getValue() instanceof String value && URI_KEYS.contains(entry.getKey())) {
+                    Matcher matcher = SCHEME.matcher(value);
+                    if (matcher.find()) {
+                        schemes.add(matcher.group(1));
+                    }
+                } else {
+                    collectSchemes(entry.getValue(), schemes);
+                }
+            }
+        } else if (node instanceof Collection<?> items) {
+            for (Object item : items) {
+                collectSchemes(item, schemes);
+            }
+        }
+    }
+
+    private void addIfMissing(Set<String> coordinates, String coordinate) {
+        String[] parts = coordinate.split(":");
+        if (parts.length < 3) {
+            LOG.debug("Ignoring incomplete coordinate {}", coordinate);
+            return;
+        }
+
+        if (!canonicalizer.isProvided(parts[0], parts[1])) {
+            coordinates.add(coordinate);
+        }
+    }
+}
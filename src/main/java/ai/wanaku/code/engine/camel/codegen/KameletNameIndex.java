@@ -0,0 +1,147 @@
+package ai.wanaku.code.engine.camel.codegen;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Character trigram index of the kamelet names of a code generation package, used to suggest the
+ * names closest to a misspelled one.
+ *
+ * <p>Names are compared case-insensitively, padded so their first and last characters weigh as much as
+ * the others. The similarity of two names is the Dice coefficient of their trigram sets: twice the
+ * number of shared trigrams over the total number of trigrams. Only names sharing a trigram with the
+ * misspelled one are scored. The index is built once when the package is loaded and never changes
+ * afterwards, so it is safe to query concurrently.
+ */
+public class KameletNameIndex {
+
+    /** The least similarity of a suggested name. */
+    public static final double SUGGESTION_SIMILARITY = 0.3;
+
+    /** The least similarity of a name resolved in place of a misspelled one. */
+    public static final double RESOLUTION_SIMILARITY = 0.6;
+
+    /** How much more similar than any other a name must be to be resolved. */
+    public static final double RESOLUTION_MARGIN = 0.1;
+
+    private static final Comparator<Match> RANKING =
+            Comparator.comparingDouble(Match::similarity).reversed().thenComparing(Match::name);
+
+    private final String[] names;
+    private final int[] trigramCounts;
+    private final Map<String, int[]> postings;
+
+    /**
+     * Builds the index of a set of kamelet names.
+     *
+     * @param kameletNames the kamelet names
+     */
+    public KameletNameIndex(Collection<String> kameletNames) {
+        this.names = kameletNames.stream().sorted().toArray(String[]::new);
+        this.trigramCounts = new int[names.length];
+
+        Map<String, List<Integer>> ids = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            Set<String> trigrams = trigrams(names[i]);
+            trigramCounts[i] = trigrams.size();
+            for (String trigram : trigrams) {
+                ids.computeIfAbsent(trigram, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        this.postings = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : ids.entrySet()) {
+            postings.put(
+                    entry.getKey(),
+                    entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /**
+     * Returns the distinct trigrams of a name.
+     *
+     * @param name the name
+     * @return the trigrams, in order of appearance
+     */
+    static Set<String> trigrams(String name) {
+        String padded = "  " + name.toLowerCase(Locale.ROOT) + " ";
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    /**
+     * Finds the kamelet names closest to a name.
+     *
+     * @param name the possibly misspelled name
+     * @param maxResults the maximum number of names to return
+     * @return the names at least {@link #SUGGESTION_SIMILARITY} similar, most similar first
+     */
+    public List<Match> suggest(String name, int maxResults) {
+        if (name == null || name.isBlank() || maxResults <= 0 || names.length == 0) {
+            return List.of();
+        }
+
+        final Set<String> trigrams = trigrams(name.strip());
+        final int[] shared = new int[names.length];
+        for (String trigram : trigrams) {
+            int[] ids = postings.get(trigram);
+            if (ids != null) {
+                for (int id : ids) {
+                    shared[id]++;
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            if (shared[i] == 0) {
+                continue;
+            }
+
+            double similarity = 2.0 * shared[i] / (trigrams.size() + trigramCounts[i]);
+            if (similarity >= SUGGESTION_SIMILARITY) {
+                matches.add(new Match(names[i], similarity));
+            }
+        }
+
+        matches.sort(RANKING);
+        return matches.size() > maxResults ? List.copyOf(matches.subList(0, maxResults)) : matches;
+    }
+
+    /**
+     * Resolves a misspelled name to a kamelet name, if one is clearly the closest.
+     *
+     * @param name the possibly misspelled name
+     * @return the kamelet name at least {@link #RESOLUTION_SIMILARITY} similar and ahead of any other by
+     *     {@link #RESOLUTION_MARGIN}, or empty if there is none
+     */
+    public Optional<String> resolve(String name) {
+        List<Match> matches = suggest(name, 2);
+        if (matches.isEmpty() || matches.get(0).similarity() < RESOLUTION_SIMILARITY) {
+            return Optional.empty();
+        }
+        if (matches.size() > 1 && matches.get(0).similarity() - matches.get(1).similarity() < RESOLUTION_MARGIN) {
+            return Optional.empty();
+        }
+        return Optional.of(matches.get(0).name());
+    }
+
+    /**
+     * A kamelet name close to a looked up name.
+     *
+     * @param name the kamelet name
+     * @param similarity the Dice coefficient of the trigrams of both names, from 0 to 1
+     */
+    public record Match(String name, double similarity) {}
+}
@@ -0,0 +1,266 @@
+package ai.wanaku.code.engine.camel.codegen;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+/**
+ * In-memory inverted index ranking the kamelets of a code generation package against free-text queries.
+ *
+ * <p>Each kamelet is indexed on its name, {@code spec.definition.title}, {@code description}, the values
+ * of its {@code metadata.labels} and the names of its properties. Name and title terms are weighted
+ * higher, as they describe the kamelet best. Matches are ranked with Okapi BM25. The index is built once
+ * when the package is loaded and never changes afterwards, so it is safe to search concurrently.
+ */
+public class KameletSearchIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(KameletSearchIndex.class);
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_WEIGHT = 3;
+    private static final int TITLE_WEIGHT = 2;
+
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern CAMEL_CASE = Pattern.compile("(?<=\\p{Ll})(?=\\p{Lu})");
+
+    // Too common in descriptions and queries to tell kamelets apart
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "into", "is", "it", "of", "on", "or",
+            "that", "the", "this", "to", "with");
+
+    private static final Comparator<Hit> RANKING =
+            Comparator.comparingDouble(Hit::score).reversed().thenComparing(Hit::name);
+
+    private final String[] names;
+    private final double[] lengthNorms;
+    private final Map<String, Postings> postings;
+
+    private KameletSearchIndex(String[] names, double[] lengthNorms, Map<String, Postings> postings) {
+        this.names = names;
+        this.lengthNorms = lengthNorms;
+        this.postings = postings;
+    }
+
+    /**
+     * Creates an index without any kamelet.
+     *
+     * @return an empty index
+     */
+    public static KameletSearchIndex empty() {
+        return new KameletSearchIndex(new String[0], new double[0], Map.of());
+    }
+
+    /**
+     * Builds the index of a set of kamelets.
+     *
+     * @param kamelets the YAML content of the kamelets, by name; a null or malformed content only
+     *     indexes the name
+     * @return the index
+     */
+    public static KameletSearchIndex build(Map<String, String> kamelets) {
+        // Sorted, so documents get stable identifiers and ties rank by name
+        Map<String, String> sorted = new TreeMap<>(kamelets);
+        String[] names = sorted.keySet().toArray(String[]::new);
+        int[] lengths = new int[names.length];
+        Map<String, Map<Integer, Integer>> frequencies = new HashMap<>();
+
+        for (int document = 0; document < names.length; document++) {
+            Map<String, Integer> terms = new HashMap<>();
+            addTerms(terms, names[document], NAME_WEIGHT);
+            addMetadataTerms(terms, names[document], sorted.get(names[document]));
+
+            for (Map.Entry<String, Integer> term : terms.entrySet()) {
+                frequencies.computeIfAbsent(term.getKey(), k -> new TreeMap<>()).put(document, term.getValue());
+                lengths[document] += term.getValue();
+            }
+        }
+
+        double averageLength = 0;
+        for (int length : lengths) {
+            averageLength += length;
+        }
+        averageLength = names.length > 0 ? averageLength / names.length : 0;
+
+        double[] lengthNorms = new double[names.length];
+        for (int document = 0; document < names.length; document++) {
+            lengthNorms[document] = K1 * (1 - B + B * lengths[document] / Math.max(averageLength, 1));
+        }
+
+        Map<String, Postings> postings = new HashMap<>();
+        for (Map.Entry<String, Map<Integer, Integer>> term : frequencies.entrySet()) {
+            Map<Integer, Integer> documents = term.getValue();
+            int[] ids = new int[documents.size()];
+            int[] counts = new int[documents.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> entry : documents.entrySet()) {
+                ids[i] = entry.getKey();
+                counts[i++] = entry.getValue();
+            }
+
+            double idf = Math.log(1 + (names.length - ids.length + 0.5) / (ids.length + 0.5));
+            postings.put(term.getKey(), new Postings(ids, counts, idf));
+        }
+
+        LOG.info("Built the search index of {} kamelets with {} terms", names.length, postings.size());
+        return new KameletSearchIndex(names, lengthNorms, postings);
+    }
+
+    private static void addMetadataTerms(Map<String, Integer> terms, String name, String kamelet) {
+        if (kamelet == null) {
+            return;
+        }
+
+        final Object root;
+        try {
+            root = new Yaml(new SafeConstructor(new LoaderOptions())).load(kamelet);
+        } catch (RuntimeException e) {
+            LOG.warn("Indexing only the name of kamelet {}, its content cannot be parsed: {}", name, e.getMessage());
+            return;
+        }
+        if (!(root instanceof Map<?, ?> kameletMap)) {
+            return;
+        }
+
+        if (kameletMap.get("metadata") instanceof Map<?, ?> metadata
+                && metadata.get("labels") instanceof Map<?, ?> labels) {
+            for (Object label : labels.values()) {
+                addTerms(terms, label, 1);
+            }
+        }
+
+        if (kameletMap.get("spec") instanceof Map<?, ?> spec
+                && spec.get("definition") instanceof Map<?, ?> definition) {
+            addTerms(terms, definition.get("title"), TITLE_WEIGHT);
+            addTerms(terms, definition.get("description"), 1);
+            if (definition.get("properties") instanceof Map<?, ?> properties) {
+                for (Object property : properties.keySet()) {
+                    addTerms(terms, property, 1);
+                }
+            }
+        }
+    }
+
+    private static void addTerms(Map<String, Integer> terms, Object text, int weight) {
+        if (text instanceof String s) {
+            for (String term : tokenize(s)) {
+                terms.merge(term, weight, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Splits a text into lower case terms, leaving out stop words. Camel case words are indexed both
+     * whole and split, so {@code bootstrapServers} matches queries for either form.
+     *
+     * @param text the text
+     * @return the terms, in order of appearance
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String word : SEPARATOR.split(text)) {
+            if (word.isEmpty()) {
+                continue;
+            }
+
+            addTerm(terms, word);
+            String[] parts = CAMEL_CASE.split(word);
+            if (parts.length > 1) {
+                for (String part : parts) {
+                    addTerm(terms, part);
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static void addTerm(List<String> terms, String word) {
+        String term = word.toLowerCase(Locale.ROOT);
+        if (!STOP_WORDS.contains(term)) {
+            terms.add(term);
+        }
+    }
+
+    /**
+     * Returns the number of indexed kamelets.
+     *
+     * @return the number of kamelets
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Finds the kamelets best matching a query.
+     *
+     * @param query the free-text query
+     * @param maxResults the maximum number of matches to return
+     * @return the matching kamelets, best first
+     */
+    public List<Hit> search(String query, int maxResults) {
+        if (query == null || maxResults <= 0 || names.length == 0) {
+            return List.of();
+        }
+
+        final double[] scores = new double[names.length];
+        boolean matched = false;
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            Postings termPostings = postings.get(term);
+            if (termPostings == null) {
+                continue;
+            }
+
+            matched = true;
+            for (int i = 0; i < termPostings.documents().length; i++) {
+                int document = termPostings.documents()[i];
+                int frequency = termPostings.frequencies()[i];
+                scores[document] += termPostings.idf() * frequency * (K1 + 1) / (frequency + lengthNorms[document]);
+            }
+        }
+        if (!matched) {
+            return List.of();
+        }
+
+        // Keeps the best matches only, the worst of them at the head
+        PriorityQueue<Hit> best = new PriorityQueue<>(RANKING.reversed());
+        for (int document = 0; document < scores.length; document++) {
+            if (scores[document] <= 0) {
+                continue;
+            }
+
+            Hit hit = new Hit(names[document], scores[document]);
+            if (best.size() < maxResults) {
+                best.add(hit);
+            } else if (RANKING.compare(hit, best.peek()) < 0) {
+                best.poll();
+                best.add(hit);
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(RANKING);
+        return hits;
+    }
+
+    private record Postings(int[] documents, int[] frequencies, double idf) {}
+
+    /**
+     * A kamelet matching a query.
+     *
+     * @param name the kamelet name
+     * @param score the BM25 score of the kamelet
+     */
+    public record Hit(String name, double score) {}
+}
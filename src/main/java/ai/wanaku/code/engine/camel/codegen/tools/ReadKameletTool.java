@@ -1,15 +1,23 @@
 package ai.wanaku.code.engine.camel.codegen.tools;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ai.wanaku.code.engine.camel.codegen.CodeGenResourceLoader;
+import ai.wanaku.code.engine.camel.codegen.KameletNameIndex;
 
 /**
  * Tool that reads the content of a Kamelet by name.
  *
  * <p>This tool retrieves the complete YAML content of a Kamelet from the kamelets directory
  * in the code generation package.
+ *
+ * <p>When no kamelet has the requested name, the error lists the closest names, found with the
+ * {@link KameletNameIndex} of the package. In fuzzy mode, a name clearly closer than any other is read
+ * instead, its content preceded by a YAML comment telling which kamelet was resolved.
  */
 public class ReadKameletTool {
     private static final Logger LOG = LoggerFactory.getLogger(ReadKameletTool.class);
@@ -23,6 +31,12 @@ public class ReadKameletTool {
     /** The parameter name for the kamelet name. */
     public static final String PARAM_NAME = "name";
 
+    /** The parameter name for the optional fuzzy mode. */
+    public static final String PARAM_FUZZY = "fuzzy";
+
+    /** The maximum number of names suggested when a kamelet is not found. */
+    public static final int MAX_SUGGESTIONS = 5;
+
     private final CodeGenResourceLoader resourceLoader;
 
     /**
@@ -43,6 +57,19 @@ public class ReadKameletTool {
      * @throws IOException if the kamelet file cannot be read
      */
     public String execute(String name) throws IOException {
+        return execute(name, false);
+    }
+
+    /**
+     * Reads and returns the content of a Kamelet by name, possibly resolving a misspelled name.
+     *
+     * @param name the kamelet name (without .kamelet.yaml extension)
+     * @param fuzzy whether to read the kamelet clearly closest to a name that matches none
+     * @return the YAML content of the kamelet
+     * @throws IllegalArgumentException if the name is null, empty, or the kamelet is not found
+     * @throws IOException if the kamelet file cannot be read
+     */
+    public String execute(String name, boolean fuzzy) throws IOException {
         LOG.debug("Executing readKamelet for: {}", name);
 
         // Validate input
@@ -59,7 +86,14 @@ public class ReadKameletTool {
 
         // Check if kamelet exists
         if (!resourceLoader.hasKamelet(cleanName)) {
-            throw new IllegalArgumentException("Kamelet '" + cleanName + "' not found");
+            Optional<String> resolved = fuzzy ? resourceLoader.getNameIndex().resolve(cleanName) : Optional.empty();
+            if (resolved.isEmpty()) {
+                throw new IllegalArgumentException(notFoundMessage(cleanName));
+            }
+
+            LOG.debug("Resolved kamelet name {} to {}", cleanName, resolved.get());
+            return "# Kamelet '" + cleanName + "' not found, showing '" + resolved.get() + "'\n"
+                    + resourceLoader.readKamelet(resolved.get());
         }
 
         // Read and return content
@@ -69,6 +103,15 @@ public class ReadKameletTool {
         return content;
     }
 
+    private String notFoundMessage(String name) {
+        List<KameletNameIndex.Match> matches = resourceLoader.getNameIndex().suggest(name, MAX_SUGGESTIONS);
+        if (matches.isEmpty()) {
+            return "Kamelet '" + name + "' not found";
+        }
+        return "Kamelet '" + name + "' not found. Did you mean: "
+                + matches.stream().map(KameletNameIndex.Match::name).collect(Collectors.joining(", ")) + "?";
+    }
+
     /**
      * Returns the description for this tool.
      *
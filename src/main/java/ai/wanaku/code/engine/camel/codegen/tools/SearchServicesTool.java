@@ -1,16 +1,35 @@
 package ai.wanaku.code.engine.camel.codegen.tools;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ai.wanaku.code.engine.camel.codegen.CodeGenConfig;
 import ai.wanaku.code.engine.camel.codegen.CodeGenResourceLoader;
+import ai.wanaku.code.engine.camel.codegen.KameletSearchIndex;
 
 /**
  * Tool that searches for available services (Kamelets) in the code generation package.
  *
  * <p>This tool reads the list of available services from the configuration and returns them
- * formatted within a context template that explains how to use Kamelets in orchestrations.
+ * formatted within a context template that explains how to use Kamelets in orchestrations. The
+ * configuration of a loaded package does not change, so the result is formatted once.
+ *
+ * <p>When given a query, only the best matching available services are listed, ranked by the
+ * {@link KameletSearchIndex} of the package.
+ *
+ * <p>Given a limit or a cursor, the listed services are split in pages, in the order of the
+ * configuration or of the ranking. Each page ends with an opaque cursor to pass back for the next one,
+ * bound to the query by its SHA-256 digest. A page is built from the services it lists only, the full
+ * list is never formatted again. The rankings of the {@link #MAX_CACHED_RANKINGS} most recently paged
+ * queries are kept, so the following pages of a query neither score the index nor sort the matches again.
  */
 public class SearchServicesTool {
     private static final Logger LOG = LoggerFactory.getLogger(SearchServicesTool.class);
@@ -18,6 +37,30 @@ public class SearchServicesTool {
     /** The name of this tool as registered with Wanaku. */
     public static final String TOOL_NAME = "searchServicesTool";
 
+    /** The parameter name for the optional search query. */
+    public static final String PARAM_QUERY = "query";
+
+    /** The parameter name for the optional maximum number of services per page. */
+    public static final String PARAM_LIMIT = "limit";
+
+    /** The parameter name for the optional cursor of the page to return. */
+    public static final String PARAM_CURSOR = "cursor";
+
+    /** The maximum number of kamelets listed for a query, without a limit. */
+    public static final int MAX_QUERY_RESULTS = 10;
+
+    /** The number of services per page when only a cursor is given. */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /** The largest accepted limit. */
+    public static final int MAX_PAGE_SIZE = 200;
+
+    /** The number of paged queries whose ranking is kept. */
+    public static final int MAX_CACHED_RANKINGS = 64;
+
+    private static final String KAMELET_PREFIX = CodeGenResourceLoader.KAMELET_PREFIX;
+    private static final String CURSOR_SEPARATOR = ":";
+
     /**
      * Context template for formatting the services list.
      * The %s placeholder is replaced with the list of available services.
@@ -35,7 +78,16 @@ public class SearchServicesTool {
             ---
             %s""";
 
+    private static final String CONTEXT_HEADER = CONTEXT_TEMPLATE.formatted("");
+
     private final CodeGenResourceLoader resourceLoader;
+    private final String result;
+    private final LinkedHashMap<String, List<KameletSearchIndex.Hit>> rankings = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<KameletSearchIndex.Hit>> eldest) {
+            return size() > MAX_CACHED_RANKINGS;
+        }
+    };
 
     /**
      * Creates a new SearchServicesTool.
@@ -44,6 +96,11 @@ public class SearchServicesTool {
      */
     public SearchServicesTool(CodeGenResourceLoader resourceLoader) {
         this.resourceLoader = resourceLoader;
+
+        CodeGenConfig config = resourceLoader.getConfig();
+        List<String> services = config.getAvailableServices();
+        this.result = String.format(CONTEXT_TEMPLATE, formatServicesList(services));
+        LOG.debug("Found {} services", services != null ? services.size() : 0);
     }
 
     /**
@@ -53,15 +110,145 @@ public class SearchServicesTool {
      */
     public String execute() {
         LOG.debug("Executing searchServicesTool");
+        return result;
+    }
 
-        CodeGenConfig config = resourceLoader.getConfig();
-        List<String> services = config.getAvailableServices();
+    /**
+     * Executes the search and returns the formatted list of the services best matching a query.
+     *
+     * @param query the free-text query, or null or blank to list all the available services
+     * @return the formatted services list with context template
+     */
+    public String execute(String query) {
+        if (query == null || query.isBlank()) {
+            return execute();
+        }
 
-        String servicesList = formatServicesList(services);
-        String result = String.format(CONTEXT_TEMPLATE, servicesList);
+        LOG.debug("Executing searchServicesTool for: {}", query);
+        List<KameletSearchIndex.Hit> hits = resourceLoader.getSearchIndex().search(query, MAX_QUERY_RESULTS);
+        LOG.debug("Found {} services matching {}", hits.size(), query);
 
-        LOG.debug("Found {} services", services.size());
-        return result;
+        if (hits.isEmpty()) {
+            return String.format(CONTEXT_TEMPLATE, "(No services match the query)");
+        }
+        return String.format(
+                CONTEXT_TEMPLATE,
+                hits.stream().map(hit -> KAMELET_PREFIX + hit.name()).collect(Collectors.joining("\n")));
+    }
+
+    /**
+     * Executes the search and returns one page of the formatted list of services.
+     *
+     * @param query the free-text query, or null or blank to list all the available services
+     * @param limit the maximum number of services in the page, or null for the default
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @return the formatted page with context template, ending with the cursor of the next page if any
+     * @throws IllegalArgumentException if the limit is out of range or the cursor does not belong to the query
+     */
+    public String execute(String query, Integer limit, String cursor) {
+        if (limit == null && (cursor == null || cursor.isEmpty())) {
+            return execute(query);
+        }
+
+        if (limit != null && (limit < 1 || limit > MAX_PAGE_SIZE)) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE + ": " + limit);
+        }
+
+        final String normalizedQuery = query == null ? "" : query.strip();
+        final int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        final int offset = decodeCursor(cursor, normalizedQuery);
+        final long end = (long) offset + pageSize;
+        LOG.debug("Executing searchServicesTool for: '{}' (offset {}, limit {})", normalizedQuery, offset, pageSize);
+
+        final List<String> page;
+        final boolean more;
+        if (normalizedQuery.isEmpty()) {
+            List<String> services = resourceLoader.getConfig().getAvailableServices();
+            int size = services != null ? services.size() : 0;
+            page = offset < size ? services.subList(offset, (int) Math.min(end, size)) : List.of();
+            more = end < size;
+        } else {
+            List<KameletSearchIndex.Hit> hits = ranking(normalizedQuery);
+            page = offset < hits.size()
+                    ? hits.subList(offset, (int) Math.min(end, hits.size())).stream()
+                            .map(hit -> KAMELET_PREFIX + hit.name())
+                            .toList()
+                    : List.of();
+            more = end < hits.size();
+        }
+
+        StringBuilder builder = new StringBuilder(CONTEXT_HEADER);
+        if (page.isEmpty()) {
+            builder.append(offset == 0 ? "(No services match the query)" : "(No more services)");
+        } else {
+            for (int i = 0; i < page.size(); i++) {
+                if (i > 0) {
+                    builder.append('\n');
+                }
+                builder.append(page.get(i));
+            }
+        }
+        if (more) {
+            builder.append("\n\n(More services available, pass cursor ")
+                    .append(encodeCursor((int) end, normalizedQuery))
+                    .append(" to list them)");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the ranking of a query, from the cache when it was paged recently.
+     *
+     * @param query the normalized query
+     * @return every matching service, best first
+     */
+    List<KameletSearchIndex.Hit> ranking(String query) {
+        synchronized (rankings) {
+            List<KameletSearchIndex.Hit> hits = rankings.get(query);
+            if (hits != null) {
+                return hits;
+            }
+        }
+
+        // Ranked outside the lock, a concurrent miss of the same query only ranks it twice
+        KameletSearchIndex index = resourceLoader.getSearchIndex();
+        List<KameletSearchIndex.Hit> hits = List.copyOf(index.search(query, index.size()));
+        synchronized (rankings) {
+            rankings.put(query, hits);
+        }
+        return hits;
+    }
+
+    private static String digest(String query) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(query.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String encodeCursor(int offset, String query) {
+        String cursor = offset + CURSOR_SEPARATOR + digest(query);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeCursor(String cursor, String query) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(CURSOR_SEPARATOR);
+            int offset = Integer.parseInt(decoded.substring(0, separator));
+            if (offset >= 0 && decoded.substring(separator + 1).equals(digest(query))) {
+                return offset;
+            }
+        } catch (RuntimeException e) {
+            LOG.debug("Malformed cursor {}: {}", cursor, e.getMessage());
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
     }
 
     /**
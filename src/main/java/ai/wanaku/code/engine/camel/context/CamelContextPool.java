@@ -0,0 +1,231 @@
+package ai.wanaku.code.engine.camel.context;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ai.wanaku.code.engine.camel.WanakuCamelManager;
+import ai.wanaku.code.engine.camel.downloader.DependencyCache;
+
+/**
+ * Bounded pool of started, route-less Camel contexts keyed by their dependency set.
+ *
+ * <p>Creating a {@link WanakuCamelManager} means resolving dependencies and starting a full
+ * CamelContext, which dominates the cost of short executions. This pool lets an execution borrow a
+ * context that was created for the same dependencies, load its routes into it, and hand it back once
+ * the routes were removed again.
+ *
+ * <p>At most {@code maxIdlePerKey} idle contexts are kept for each dependency set, and contexts that
+ * stay idle for longer than the idle timeout are stopped in the background. A pool with a maximum
+ * size of zero is disabled: every acquisition creates a new context and every release stops it.
+ */
+public class CamelContextPool implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(CamelContextPool.class);
+
+    private final int maxIdlePerKey;
+    private final long idleTimeoutNanos;
+    private final ContextReserve reserve;
+    private final DependencyCache dependencyCache;
+    private final Map<String, Deque<IdleContext>> idleContexts = new HashMap<>();
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * Creates a new CamelContextPool.
+     *
+     * @param maxIdlePerKey the maximum number of idle contexts kept per dependency set (0 disables pooling)
+     * @param idleTimeout how long a context may stay idle before it is stopped
+     */
+    public CamelContextPool(int maxIdlePerKey, Duration idleTimeout) {
+        this(maxIdlePerKey, idleTimeout, ContextProfile.DEFAULT);
+    }
+
+    /**
+     * Creates a new CamelContextPool.
+     *
+     * @param maxIdlePerKey the maximum number of idle contexts kept per dependency set (0 disables pooling)
+     * @param idleTimeout how long a context may stay idle before it is stopped
+     * @param profile the profile new contexts are created with
+     */
+    public CamelContextPool(int maxIdlePerKey, Duration idleTimeout, ContextProfile profile) {
+        this(maxIdlePerKey, idleTimeout, ContextReserve.disabled(profile));
+    }
+
+    /**
+     * Creates a new CamelContextPool.
+     *
+     * @param maxIdlePerKey the maximum number of idle contexts kept per dependency set (0 disables pooling)
+     * @param idleTimeout how long a context may stay idle before it is stopped
+     * @param reserve the reserve of started contexts used when no idle context matches
+     */
+    public CamelContextPool(int maxIdlePerKey, Duration idleTimeout, ContextReserve reserve) {
+        this(maxIdlePerKey, idleTimeout, reserve, DependencyCache.disabled());
+    }
+
+    /**
+     * Creates a new CamelContextPool.
+     *
+     * @param maxIdlePerKey the maximum number of idle contexts kept per dependency set (0 disables pooling)
+     * @param idleTimeout how long a context may stay idle before it is stopped
+     * @param reserve the reserve of started contexts used when no idle context matches
+     * @param dependencyCache the cache of resolved dependency sets used by new contexts
+     */
+    public CamelContextPool(
+            int maxIdlePerKey, Duration idleTimeout, ContextReserve reserve, DependencyCache dependencyCache) {
+        this.maxIdlePerKey = Math.max(0, maxIdlePerKey);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.reserve = reserve;
+        this.dependencyCache = dependencyCache;
+
+        if (isEnabled() && idleTimeoutNanos > 0) {
+            long periodMillis = Math.max(1000, idleTimeout.toMillis() / 2);
+            this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "cee-context-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor.scheduleWithFixedDelay(this::evictIdle, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.evictor = null;
+        }
+    }
+
+    /**
+     * Creates a pool that never keeps contexts around.
+     *
+     * @return a disabled pool
+     */
+    public static CamelContextPool disabled() {
+        return new CamelContextPool(0, Duration.ZERO);
+    }
+
+    /**
+     * Checks if this pool retains contexts between executions.
+     *
+     * @return true if pooling is enabled
+     */
+    public boolean isEnabled() {
+        return maxIdlePerKey > 0;
+    }
+
+    /**
+     * Borrows a started, route-less context for the given dependencies, creating one if none is idle.
+     *
+     * @param dependenciesList the raw dependency list of the execution (may be null)
+     * @param repositoriesList the Maven repositories to use when a new context must be created
+     * @return a started context manager without routes
+     * @throws Exception if a new context cannot be created
+     */
+    public WanakuCamelManager acquire(String dependenciesList, String repositoriesList) throws Exception {
+        final String key = WanakuCamelManager.dependencyKey(dependenciesList);
+
+        synchronized (idleContexts) {
+            Deque<IdleContext> idle = idleContexts.get(key);
+            if (idle != null && !idle.isEmpty()) {
+                LOG.debug("Reusing pooled Camel context for dependencies [{}]", key);
+                return idle.pollFirst().manager();
+            }
+        }
+
+        LOG.debug("No pooled Camel context for dependencies [{}], creating a new one", key);
+        return new WanakuCamelManager(dependenciesList, repositoriesList, reserve, dependencyCache);
+    }
+
+    /**
+     * Returns a context to the pool after its execution finished.
+     *
+     * <p>The routes are removed from the context. If that fails, if the context is no longer running,
+     * or if the pool is already full for this dependency set, the context is stopped instead.
+     *
+     * @param manager the context manager to return (may be null)
+     */
+    public void release(WanakuCamelManager manager) {
+        if (manager == null) {
+            return;
+        }
+
+        if (isEnabled() && manager.removeRoutes()) {
+            synchronized (idleContexts) {
+                Deque<IdleContext> idle =
+                        idleContexts.computeIfAbsent(manager.getDependencyKey(), k -> new ArrayDeque<>());
+                if (idle.size() < maxIdlePerKey) {
+                    idle.addFirst(new IdleContext(manager, System.nanoTime()));
+                    return;
+                }
+            }
+        }
+
+        stopQuietly(manager);
+    }
+
+    /**
+     * Returns the number of idle contexts currently held by the pool.
+     *
+     * @return the idle context count
+     */
+    public int getIdleCount() {
+        synchronized (idleContexts) {
+            return idleContexts.values().stream().mapToInt(Deque::size).sum();
+        }
+    }
+
+    private void evictIdle() {
+        final long now = System.nanoTime();
+        List<WanakuCamelManager> expired = new ArrayList<>();
+
+        synchronized (idleContexts) {
+            Iterator<Deque<IdleContext>> it = idleContexts.values().iterator();
+            while (it.hasNext()) {
+                Deque<IdleContext> idle = it.next();
+                // The oldest contexts are at the tail since released contexts are pushed to the head
+                while (!idle.isEmpty() && now - idle.peekLast().idleSince() > idleTimeoutNanos) {
+                    expired.add(idle.pollLast().manager());
+                }
+                if (idle.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+
+        if (!expired.isEmpty()) {
+            LOG.debug("Evicting {} idle Camel contexts", expired.size());
+            expired.forEach(CamelContextPool::stopQuietly);
+        }
+    }
+
+    private static void stopQuietly(WanakuCamelManager manager) {
+        try {
+            LOG.info("Stopping Camel context");
+            manager.stop();
+        } catch (Exception e) {
+            LOG.error("Error stopping Camel context", e);
+        }
+    }
+
+    /**
+     * Stops the evictor and every idle context.
+     */
+    @Override
+    public void close() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+
+        List<WanakuCamelManager> remaining = new ArrayList<>();
+        synchronized (idleContexts) {
+            idleContexts.values().forEach(idle -> idle.forEach(c -> remaining.add(c.manager())));
+            idleContexts.clear();
+        }
+        remaining.forEach(CamelContextPool::stopQuietly);
+    }
+
+    private record IdleContext(WanakuCamelManager manager, long idleSince) {}
+}
@@ -0,0 +1,110 @@
+package ai.wanaku.code.engine.camel.context;
+
+import java.util.stream.Collectors;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Component;
+import org.apache.camel.StartupStep;
+import org.apache.camel.StartupSummaryLevel;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.spi.StartupStepRecorder;
+import org.apache.camel.support.DefaultComponent;
+import org.apache.camel.support.LifecycleStrategySupport;
+import org.apache.camel.support.startup.BacklogStartupStepRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * How the Camel contexts running executions are configured before they start.
+ */
+public enum ContextProfile {
+    /**
+     * A stock Camel context, with JMX management and the regular startup summary.
+     */
+    DEFAULT,
+
+    /**
+     * A context trimmed down for short-lived executions. JMX management and the startup summary are
+     * switched off, producers are only started when a message is first sent to them, and Camel's
+     * startup step recorder is enabled so that the slowest startup steps can be logged.
+     */
+    LEAN;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContextProfile.class);
+    private static final int REPORTED_STARTUP_STEPS = 5;
+
+    /**
+     * Creates a new context configured with this profile. The context is not started.
+     *
+     * @param classLoader the application class loader of the context
+     * @return the new context
+     */
+    public CamelContext newContext(ClassLoader classLoader) {
+        CamelContext context = new DefaultCamelContext();
+        context.setApplicationContextClassLoader(classLoader);
+        configure(context);
+        return context;
+    }
+
+    /**
+     * Applies this profile to a context that was not started yet.
+     *
+     * @param context the context to configure
+     */
+    public void configure(CamelContext context) {
+        if (this == DEFAULT) {
+            return;
+        }
+
+        context.disableJMX();
+        context.setStartupSummaryLevel(StartupSummaryLevel.Off);
+        context.setSourceLocationEnabled(false);
+        context.setTypeConverterStatisticsEnabled(false);
+
+        // Components are created on demand when a route refers to them, only their producers are
+        // eagerly started with the routes
+        context.addLifecycleStrategy(new LifecycleStrategySupport() {
+            @Override
+            public void onComponentAdd(String name, Component component) {
+                if (component instanceof DefaultComponent defaultComponent) {
+                    defaultComponent.setLazyStartProducer(true);
+                }
+            }
+        });
+
+        BacklogStartupStepRecorder recorder = new BacklogStartupStepRecorder();
+        recorder.setEnabled(true);
+        context.getCamelContextExtension().setStartupStepRecorder(recorder);
+    }
+
+    /**
+     * Logs how long a context took to start and, when the startup steps were recorded, which steps took
+     * the longest.
+     *
+     * @param context the started context
+     * @param startNanos when the context creation began, from {@link System#nanoTime()}
+     */
+    public void logStartup(CamelContext context, long startNanos) {
+        if (!LOG.isDebugEnabled()) {
+            return;
+        }
+
+        final long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        final StartupStepRecorder recorder = context.getCamelContextExtension().getStartupStepRecorder();
+        if (!(recorder instanceof BacklogStartupStepRecorder backlog)) {
+            LOG.debug("Started {} Camel context in {} ms", this, elapsedMillis);
+            return;
+        }
+
+        String slowest = backlog.steps()
+                .sorted((a, b) -> Long.compare(b.getDuration(), a.getDuration()))
+                .limit(REPORTED_STARTUP_STEPS)
+                .map(ContextProfile::describe)
+                .collect(Collectors.joining(", "));
+        LOG.debug("Started {} Camel context in {} ms, slowest startup steps: {}", this, elapsedMillis, slowest);
+    }
+
+    private static String describe(StartupStep step) {
+        final String name = step.getName() == null ? "" : " " + step.getName();
+        return String.format("%s%s (%d ms)", step.getDescription(), name, step.getDuration());
+    }
+}
@@ -0,0 +1,208 @@
+package ai.wanaku.code.engine.camel.context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.camel.CamelContext;
+import org.apache.camel.spi.ThreadPoolFactory;
+import org.apache.camel.support.PluginHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Small reserve of started, route-less Camel contexts, refilled in the background.
+ *
+ * <p>Contexts in the reserve already have the components and the YAML DSL loader that nearly every
+ * execution uses initialized. Taking a context from the reserve only sets its application class loader,
+ * which moves constructing and starting the context off the critical path of the execution. When the
+ * reserve is empty, or when its size is zero, a context is created and started on the spot.
+ */
+public class ContextReserve implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ContextReserve.class);
+
+    private static final List<String> CORE_COMPONENTS = List.of("direct", "log", "kamelet");
+    private static final long REFILL_RETRY_MILLIS = 1000;
+
+    private final ContextProfile profile;
+    private final ThreadPoolFactory threadPoolFactory;
+    private final BlockingQueue<CamelContext> available;
+    private final Thread refiller;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * Creates a new ContextReserve and starts filling it.
+     *
+     * @param size the number of started contexts to keep ready (0 disables the reserve)
+     * @param profile the profile the contexts are created with
+     */
+    public ContextReserve(int size, ContextProfile profile) {
+        this(size, profile, null);
+    }
+
+    /**
+     * Creates a new ContextReserve and starts filling it.
+     *
+     * @param size the number of started contexts to keep ready (0 disables the reserve)
+     * @param profile the profile the contexts are created with
+     * @param threadPoolFactory the thread pool factory of the contexts, such as {@link SharedThreadPools}
+     *     (may be null to let each context create its own threads)
+     */
+    public ContextReserve(int size, ContextProfile profile, ThreadPoolFactory threadPoolFactory) {
+        this.profile = profile;
+        this.threadPoolFactory = threadPoolFactory;
+
+        if (size > 0) {
+            this.available = new ArrayBlockingQueue<>(size);
+            this.refiller = new Thread(this::refill, "cee-context-reserve");
+            refiller.setDaemon(true);
+            refiller.start();
+        } else {
+            this.available = null;
+            this.refiller = null;
+        }
+    }
+
+    /**
+     * Creates a reserve that keeps no context ready, every context is created on demand.
+     *
+     * @param profile the profile the contexts are created with
+     * @return a disabled reserve
+     */
+    public static ContextReserve disabled(ContextProfile profile) {
+        return new ContextReserve(0, profile);
+    }
+
+    /**
+     * Returns the profile the contexts of this reserve are created with.
+     *
+     * @return the context profile
+     */
+    public ContextProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Takes a started, route-less context, creating one if the reserve is empty.
+     *
+     * @param classLoader the application class loader for the context
+     * @return a started context
+     */
+    public CamelContext take(ClassLoader classLoader) {
+        CamelContext context = available != null ? available.poll() : null;
+        if (context != null) {
+            hits.increment();
+            context.setApplicationContextClassLoader(classLoader);
+            return context;
+        }
+
+        if (available != null) {
+            misses.increment();
+            LOG.debug("Context reserve is empty, starting a new Camel context");
+        }
+        context = newContext(classLoader);
+        context.start();
+        return context;
+    }
+
+    private CamelContext newContext(ClassLoader classLoader) {
+        CamelContext context = profile.newContext(classLoader);
+        if (threadPoolFactory != null) {
+            context.getExecutorServiceManager().setThreadPoolFactory(threadPoolFactory);
+        }
+        return context;
+    }
+
+    private void refill() {
+        while (!closed) {
+            CamelContext context = null;
+            try {
+                context = newContext(ContextReserve.class.getClassLoader());
+                context.start();
+                warmUp(context);
+
+                // Blocks while the reserve is full
+                available.put(context);
+            } catch (InterruptedException e) {
+                stopQuietly(context);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                stopQuietly(context);
+                LOG.warn("Unable to start a Camel context for the reserve: {}", e.getMessage());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(REFILL_RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void warmUp(CamelContext context) throws Exception {
+        for (String component : CORE_COMPONENTS) {
+            if (context.getComponent(component) == null) {
+                LOG.debug("Component {} is not available, it is not initialized upfront", component);
+            }
+        }
+        context.resolveLanguage("simple");
+        PluginHelper.getRoutesLoader(context).getRoutesLoader("yaml");
+    }
+
+    /**
+     * Returns a snapshot of the reserve usage.
+     *
+     * @return the current reserve statistics
+     */
+    public Stats getStats() {
+        return new Stats(available != null ? available.size() : 0, hits.sum(), misses.sum());
+    }
+
+    private static void stopQuietly(CamelContext context) {
+        if (context == null) {
+            return;
+        }
+
+        try {
+            context.stop();
+        } catch (Exception e) {
+            LOG.warn("Error stopping reserved Camel context: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the refill thread and every context still in the reserve.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (refiller == null) {
+            return;
+        }
+
+        refiller.interrupt();
+        try {
+            refiller.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<CamelContext> remaining = new ArrayList<>();
+        available.drainTo(remaining);
+        remaining.forEach(ContextReserve::stopQuietly);
+    }
+
+    /**
+     * Snapshot of the reserve usage.
+     *
+     * @param available the number of contexts ready to be taken
+     * @param hits the number of contexts taken from the reserve
+     * @param misses the number of contexts started on demand because the reserve was empty
+     */
+    public record Stats(int available, long hits, long misses) {}
+}
@@ -0,0 +1,208 @@
+package ai.wanaku.code.engine.camel.context;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.camel.Route;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ai.wanaku.code.engine.camel.WanakuCamelManager;
+
+/**
+ * Size-bounded LRU cache of started Camel contexts that already have a given route set loaded.
+ *
+ * <p>Entries are keyed by a hash of the submitted code and its dependency list, so a repeated
+ * submission skips route loading and context start and goes straight to invoking the routes. Route
+ * definitions are bound to the context that parsed them, which is why the whole started context is
+ * cached rather than the parsed definitions.
+ *
+ * <p>Only route sets whose routes are all driven by the caller ({@code direct:} or {@code kamelet:}
+ * consumers) are cached, since anything else (timers, pollers, ...) would keep running while the
+ * context sits idle in the cache. Contexts that are evicted or not cacheable are handed back to the
+ * {@link CamelContextPool}.
+ */
+public class RouteCache implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(RouteCache.class);
+
+    private static final Set<String> CACHEABLE_SCHEMES = Set.of("direct", "kamelet");
+
+    private final int maxEntries;
+    private final CamelContextPool contextPool;
+    private final LinkedHashMap<String, WanakuCamelManager> entries = new LinkedHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a new RouteCache.
+     *
+     * @param maxEntries the maximum number of cached route sets (0 disables the cache)
+     * @param contextPool the pool receiving contexts that leave the cache
+     */
+    public RouteCache(int maxEntries, CamelContextPool contextPool) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.contextPool = contextPool;
+    }
+
+    /**
+     * Computes the cache key for a route submission.
+     *
+     * @param code the route code
+     * @param dependenciesList the raw dependency list of the submission (may be null)
+     * @return the hex encoded SHA-256 hash of the normalized dependencies and the code
+     */
+    public static String key(String code, String dependenciesList) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(WanakuCamelManager.dependencyKey(dependenciesList).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(code.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Checks if this cache retains route sets between executions.
+     *
+     * @return true if the cache is enabled
+     */
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Takes the cached context for the given key out of the cache.
+     *
+     * @param key the cache key computed with {@link #key(String, String)}
+     * @return a started context with the routes loaded, or null on a cache miss
+     */
+    public WanakuCamelManager acquire(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        WanakuCamelManager manager;
+        synchronized (entries) {
+            manager = entries.remove(key);
+        }
+
+        if (manager == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        LOG.debug("Route cache hit for {}", key);
+        return manager;
+    }
+
+    /**
+     * Returns a context with its routes still loaded after an execution finished.
+     *
+     * <p>The context is cached under the given key if its routes are cacheable and no other context
+     * holds that key already. Otherwise, it is released to the context pool.
+     *
+     * @param key the cache key computed with {@link #key(String, String)}
+     * @param manager the context manager to return (may be null)
+     */
+    public void release(String key, WanakuCamelManager manager) {
+        if (manager == null) {
+            return;
+        }
+
+        if (!isEnabled() || !isCacheable(manager)) {
+            contextPool.release(manager);
+            return;
+        }
+
+        List<WanakuCamelManager> evicted = new ArrayList<>();
+        boolean cached = false;
+        synchronized (entries) {
+            if (!entries.containsKey(key)) {
+                entries.put(key, manager);
+                cached = true;
+
+                Iterator<WanakuCamelManager> it = entries.values().iterator();
+                while (entries.size() > maxEntries) {
+                    evicted.add(it.next());
+                    it.remove();
+                }
+            }
+        }
+
+        if (!cached) {
+            contextPool.release(manager);
+        }
+
+        if (!evicted.isEmpty()) {
+            evictions.add(evicted.size());
+            evicted.forEach(contextPool::release);
+        }
+    }
+
+    private static boolean isCacheable(WanakuCamelManager manager) {
+        if (!manager.getCamelContext().isStarted()) {
+            return false;
+        }
+
+        List<Route> routes = manager.getCamelContext().getRoutes();
+        if (routes.isEmpty()) {
+            return false;
+        }
+
+        for (Route route : routes) {
+            String uri = route.getEndpoint().getEndpointUri();
+            int idx = uri.indexOf(':');
+            if (idx < 0 || !CACHEABLE_SCHEMES.contains(uri.substring(0, idx))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a snapshot of the cache counters.
+     *
+     * @return the current cache statistics
+     */
+    public Stats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    /**
+     * Hands every cached context back to the context pool.
+     */
+    @Override
+    public void close() {
+        List<WanakuCamelManager> remaining;
+        synchronized (entries) {
+            remaining = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        remaining.forEach(contextPool::release);
+    }
+
+    /**
+     * Snapshot of the route cache counters.
+     *
+     * @param hits the number of submissions served from the cache
+     * @param misses the number of submissions that had to load their routes
+     * @param evictions the number of route sets evicted to honor the size bound
+     * @param size the number of route sets currently cached
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {}
+}
@@ -0,0 +1,454 @@
+package ai.wanaku.code.engine.camel.context;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.camel.spi.ThreadPoolFactory;
+import org.apache.camel.spi.ThreadPoolProfile;
+import org.apache.camel.util.concurrent.CamelThreadFactory;
+import org.apache.camel.util.concurrent.ThreadPoolRejectedPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ai.wanaku.code.engine.camel.util.ExecutorModel;
+
+/**
+ * Engine-wide thread pools shared by the Camel contexts of all executions.
+ *
+ * <p>Installed as the thread pool factory of every execution context, it hands out lightweight pools
+ * that run their tasks on a single set of engine threads instead of creating threads of their own.
+ * Threads are therefore reused across executions rather than created and destroyed with every context.
+ *
+ * <p>The threads running the tasks of split, multicast, wire tap, threads and other work pools stay under
+ * a global cap. Each of these pools also keeps the size of its profile: once it has that many tasks
+ * running, further tasks wait in its own queue, and when that is full its rejection policy applies. Once
+ * the global cap is reached, tasks of a pool below its size run in the caller thread instead of waiting
+ * for a shared thread, so work nested in other work, like a parallel split inside a parallel split,
+ * always makes progress.
+ *
+ * <p>Cached pools, fixed pools of consumers such as seda ones and producer template pools share the same
+ * threads but are not capped: their tasks may run for as long as the context or the whole execution, and
+ * must neither hold the cap nor run in their caller. Scheduled pools run on a small shared scheduler;
+ * shutting one down cancels its pending tasks. The Camel thread names are not used: shared threads are
+ * named {@code cee-route-*}.
+ */
+public class SharedThreadPools implements ThreadPoolFactory, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(SharedThreadPools.class);
+
+    private final int maxThreads;
+    private final ExecutorService workers;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final Object lock = new Object();
+    private int active;
+    private int queued;
+
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates new SharedThreadPools.
+     *
+     * @param maxThreads the maximum number of threads running tasks of work pools at the same time
+     * @param schedulerThreads the number of threads running scheduled tasks
+     * @param executorModel the model of the threads running the tasks
+     */
+    public SharedThreadPools(int maxThreads, int schedulerThreads, ExecutorModel executorModel) {
+        this.maxThreads = Math.max(1, maxThreads);
+        this.workers = executorModel.newExecutor("cee-route-");
+
+        final AtomicInteger counter = new AtomicInteger();
+        this.scheduler = new ScheduledThreadPoolExecutor(Math.max(1, schedulerThreads), r -> {
+            Thread thread = new Thread(r, "cee-route-scheduler-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public ExecutorService newCachedThreadPool(ThreadFactory threadFactory) {
+        return new Pool(0, -1, ThreadPoolRejectedPolicy.Abort);
+    }
+
+    @Override
+    public ExecutorService newThreadPool(ThreadPoolProfile profile, ThreadFactory threadFactory) {
+        if (isDedicated(profile, threadFactory)) {
+            return new Pool(0, -1, ThreadPoolRejectedPolicy.Abort);
+        }
+
+        Integer maxPoolSize = profile.getMaxPoolSize();
+        Integer maxQueueSize = profile.getMaxQueueSize();
+        return new Pool(
+                maxPoolSize != null && maxPoolSize > 0 ? maxPoolSize : Integer.MAX_VALUE,
+                maxQueueSize != null ? maxQueueSize : -1,
+                profile.getRejectedPolicy() != null ? profile.getRejectedPolicy() : ThreadPoolRejectedPolicy.Abort);
+    }
+
+    /**
+     * Checks if a pool runs tasks that last for as long as their context or execution, so they are left
+     * out of the cap.
+     *
+     * @param profile the profile of the pool
+     * @param threadFactory the factory Camel named the pool threads with
+     * @return true for fixed pools without keep alive, used by consumers, and producer template pools
+     */
+    static boolean isDedicated(ThreadPoolProfile profile, ThreadFactory threadFactory) {
+        Integer poolSize = profile.getPoolSize();
+        boolean fixed = poolSize != null
+                && poolSize.equals(profile.getMaxPoolSize())
+                && Long.valueOf(0).equals(profile.getKeepAliveTime());
+        boolean template =
+                threadFactory instanceof CamelThreadFactory factory && "ProducerTemplate".equals(factory.getName());
+        return fixed || template;
+    }
+
+    @Override
+    public ScheduledExecutorService newScheduledThreadPool(ThreadPoolProfile profile, ThreadFactory threadFactory) {
+        return new ScheduledPool();
+    }
+
+    private void dispatch(Task task, boolean capped) {
+        workers.execute(() -> {
+            Task next = task;
+            while (next != null) {
+                next.run();
+                // A task interrupted by the shutdown of its pool must not affect the next one
+                Thread.interrupted();
+                if (!capped) {
+                    return;
+                }
+
+                // Queued tasks of the pool take over its thread, as they would in a dedicated pool
+                synchronized (lock) {
+                    next = task.pool.queue.poll();
+                    if (next == null) {
+                        task.pool.active--;
+                        active--;
+                    } else {
+                        queued--;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a snapshot of the shared thread usage.
+     *
+     * @return the current statistics
+     */
+    public Stats getStats() {
+        synchronized (lock) {
+            return new Stats(active, queued, callerRuns.sum(), rejected.sum());
+        }
+    }
+
+    /**
+     * Stops the shared threads. Contexts using these pools must be stopped first.
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Snapshot of the shared thread usage.
+     *
+     * @param activeThreads the number of threads running tasks of work pools
+     * @param queuedTasks the number of tasks waiting for their pool to run fewer tasks
+     * @param callerRunsTasks the number of tasks run by their caller because the cap or their pool was full
+     * @param rejectedTasks the number of tasks rejected because their pool was full or shut down
+     */
+    public record Stats(int activeThreads, int queuedTasks, long callerRunsTasks, long rejectedTasks) {}
+
+    private final class Task implements Runnable {
+        private final Pool pool;
+        private final Runnable command;
+
+        private Task(Pool pool, Runnable command) {
+            this.pool = pool;
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            final Thread thread = Thread.currentThread();
+            synchronized (lock) {
+                pool.running.add(thread);
+            }
+            try {
+                command.run();
+            } catch (Throwable t) {
+                LOG.warn("Task of a shared route thread pool failed: {}", t.getMessage(), t);
+            } finally {
+                synchronized (lock) {
+                    pool.running.remove(thread);
+                    pool.pending--;
+                    if (pool.pending == 0) {
+                        lock.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A pool of a context, running its tasks on the shared threads. Its state is guarded by the lock.
+     */
+    private final class Pool extends AbstractExecutorService {
+        private final int maxPoolSize;
+        private final int maxQueueSize;
+        private final ThreadPoolRejectedPolicy rejectedPolicy;
+        private final ArrayDeque<Task> queue = new ArrayDeque<>();
+        private final Set<Thread> running = new HashSet<>();
+        private int active;
+        private int pending;
+        private boolean shutdown;
+
+        /**
+         * Creates a new Pool.
+         *
+         * @param maxPoolSize the maximum number of tasks running at the same time, 0 for an uncapped pool
+         * @param maxQueueSize the maximum number of waiting tasks, negative for an unbounded queue
+         * @param rejectedPolicy the policy applied once the pool is full
+         */
+        private Pool(int maxPoolSize, int maxQueueSize, ThreadPoolRejectedPolicy rejectedPolicy) {
+            this.maxPoolSize = maxPoolSize;
+            this.maxQueueSize = maxQueueSize;
+            this.rejectedPolicy = rejectedPolicy;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            synchronized (lock) {
+                if (shutdown) {
+                    rejected.increment();
+                    throw new RejectedExecutionException("Thread pool is shut down");
+                }
+
+                final Task task = new Task(this, command);
+                if (maxPoolSize == 0) {
+                    pending++;
+                    dispatch(task, false);
+                    return;
+                }
+                if (active < maxPoolSize) {
+                    // Waiting for a shared thread could deadlock nested work, running in the caller cannot
+                    if (SharedThreadPools.this.active < maxThreads) {
+                        SharedThreadPools.this.active++;
+                        active++;
+                        pending++;
+                        dispatch(task, true);
+                        return;
+                    }
+                } else if (maxQueueSize < 0 || queue.size() < maxQueueSize) {
+                    queue.add(task);
+                    queued++;
+                    pending++;
+                    return;
+                } else if (rejectedPolicy != ThreadPoolRejectedPolicy.CallerRuns) {
+                    rejected.increment();
+                    throw new RejectedExecutionException("Thread pool and its queue are full");
+                }
+            }
+
+            callerRuns.increment();
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            synchronized (lock) {
+                shutdown = true;
+                lock.notifyAll();
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            List<Runnable> dropped = new ArrayList<>();
+            synchronized (lock) {
+                shutdown = true;
+                for (Task task : queue) {
+                    dropped.add(task.command);
+                }
+                queue.clear();
+                queued -= dropped.size();
+                pending -= dropped.size();
+                running.forEach(Thread::interrupt);
+                lock.notifyAll();
+            }
+            return dropped;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            synchronized (lock) {
+                return shutdown;
+            }
+        }
+
+        @Override
+        public boolean isTerminated() {
+            synchronized (lock) {
+                return shutdown && pending == 0;
+            }
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            synchronized (lock) {
+                while (!(shutdown && pending == 0)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * A scheduled pool of a context, running its tasks on the shared scheduler.
+     */
+    private final class ScheduledPool extends AbstractExecutorService implements ScheduledExecutorService {
+        private final Set<ScheduledFuture<?>> scheduled = new HashSet<>();
+        private final Set<Thread> running = new HashSet<>();
+        private boolean shutdown;
+
+        private synchronized <T> T track(ScheduledFuture<?> future, T result) {
+            scheduled.removeIf(ScheduledFuture::isDone);
+            scheduled.add(future);
+            return result;
+        }
+
+        private synchronized void checkRunning() {
+            if (shutdown) {
+                throw new RejectedExecutionException("Scheduled thread pool is shut down");
+            }
+        }
+
+        private Runnable wrap(Runnable command) {
+            return () -> {
+                final Thread thread = Thread.currentThread();
+                synchronized (this) {
+                    running.add(thread);
+                }
+                try {
+                    command.run();
+                } finally {
+                    synchronized (this) {
+                        running.remove(thread);
+                        notifyAll();
+                    }
+                }
+            };
+        }
+
+        private <V> Callable<V> wrap(Callable<V> callable) {
+            return () -> {
+                final Thread thread = Thread.currentThread();
+                synchronized (this) {
+                    running.add(thread);
+                }
+                try {
+                    return callable.call();
+                } finally {
+                    synchronized (this) {
+                        running.remove(thread);
+                        notifyAll();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            checkRunning();
+            ScheduledFuture<?> future = scheduler.schedule(wrap(command), delay, unit);
+            return track(future, future);
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            checkRunning();
+            ScheduledFuture<V> future = scheduler.schedule(wrap(callable), delay, unit);
+            return track(future, future);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            checkRunning();
+            ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(wrap(command), initialDelay, period, unit);
+            return track(future, future);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(
+                Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            checkRunning();
+            ScheduledFuture<?> future = scheduler.scheduleWithFixedDelay(wrap(command), initialDelay, delay, unit);
+            return track(future, future);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            schedule(command, 0, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public synchronized void shutdown() {
+            shutdown = true;
+            scheduled.forEach(future -> future.cancel(false));
+            scheduled.clear();
+            notifyAll();
+        }
+
+        @Override
+        public synchronized List<Runnable> shutdownNow() {
+            shutdown();
+            running.forEach(Thread::interrupt);
+            return List.of();
+        }
+
+        @Override
+        public synchronized boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public synchronized boolean isTerminated() {
+            return shutdown && running.isEmpty();
+        }
+
+        @Override
+        public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!(shutdown && running.isEmpty())) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package ai.wanaku.code.engine.camel.downloader;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import org.apache.camel.tooling.maven.MavenArtifact;
+import org.apache.camel.tooling.maven.MavenDownloader;
+import org.apache.camel.tooling.maven.MavenDownloaderImpl;
+import org.apache.camel.tooling.maven.MavenResolutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Engine-managed Maven repository that resolves dependencies offline first.
+ *
+ * <p>Artifacts are resolved from the local repository of the engine without any network access
+ * whenever possible. Only when something is missing are the repositories of the request (or the
+ * engine defaults) and Maven Central contacted, and whatever they provide is stored in the local
+ * repository, so it survives restarts. Dependency sets with a SNAPSHOT, a version range or a LATEST or
+ * RELEASE version skip the local-only attempt, as the local copy may be outdated: they are resolved
+ * remotely every time, following the update policy of the resolver. In offline mode remote
+ * repositories are never contacted and missing artifacts fail the resolution.
+ *
+ * <p>Remote downloads are coordinated across executions: every missing dependency is fetched on its
+ * own, in parallel up to a bound, and concurrent requests for a dependency already being fetched wait
+ * for that fetch instead of starting another one. Once fetched, the whole dependency set is resolved
+ * again from the local repository, so version conflicts are mediated as if it had been resolved at
+ * once.
+ */
+public class ArtifactStore implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ArtifactStore.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int REQUEST_TIMEOUT_MILLIS = 60_000;
+
+    /** Default maximum number of dependencies fetched from remote repositories at the same time. */
+    public static final int DEFAULT_DOWNLOAD_PARALLELISM = 4;
+
+    private final Path localRepository;
+    private final boolean offline;
+    private final MavenDownloaderImpl offlineService;
+    private final MavenDownloaderImpl onlineService;
+    private final MavenDownloader offlineDownloader;
+    private final MavenDownloader onlineDownloader;
+    private final DependencyLockfiles lockfiles;
+    private final ExecutorService downloadExecutor;
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder sharedFetches = new LongAdder();
+
+    /**
+     * Creates a new ArtifactStore.
+     *
+     * @param localRepository the directory of the local repository, created on demand
+     * @param offline true to never contact remote repositories
+     */
+    public ArtifactStore(Path localRepository, boolean offline) {
+        this(localRepository, offline, DEFAULT_DOWNLOAD_PARALLELISM);
+    }
+
+    /**
+     * Creates a new ArtifactStore.
+     *
+     * @param localRepository the directory of the local repository, created on demand
+     * @param offline true to never contact remote repositories
+     * @param downloadParallelism the maximum number of dependencies fetched remotely at the same time
+     */
+    public ArtifactStore(Path localRepository, boolean offline, int downloadParallelism) {
+        this(localRepository, offline, downloadParallelism, DependencyLockfiles.disabled());
+    }
+
+    /**
+     * Creates a new ArtifactStore.
+     *
+     * @param localRepository the directory of the local repository, created on demand
+     * @param offline true to never contact remote repositories
+     * @param downloadParallelism the maximum number of dependencies fetched remotely at the same time
+     * @param lockfiles the lockfiles used to rebuild class loaders without resolving their dependencies
+     */
+    public ArtifactStore(
+            Path localRepository, boolean offline, int downloadParallelism, DependencyLockfiles lockfiles) {
+        this.localRepository = localRepository.toAbsolutePath();
+        this.offline = offline;
+        this.lockfiles = lockfiles;
+
+        final AtomicInteger counter = new AtomicInteger();
+        this.downloadExecutor = Executors.newFixedThreadPool(Math.max(1, downloadParallelism), r -> {
+            Thread thread = new Thread(r, "cee-artifact-download-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.offlineService = newService(true);
+        this.offlineDownloader = customize(offlineService);
+        if (offline) {
+            this.onlineService = null;
+            this.onlineDownloader = null;
+        } else {
+            this.onlineService = newService(false);
+            this.onlineDownloader = customize(onlineService);
+        }
+        LOG.info("Using local artifact store at {}{}", this.localRepository, offline ? " in offline mode" : "");
+    }
+
+    private static MavenDownloaderImpl newService(boolean offline) {
+        MavenDownloaderImpl service = new MavenDownloaderImpl();
+        service.setOffline(offline);
+        service.build();
+        service.init();
+        service.start();
+        return service;
+    }
+
+    private MavenDownloader customize(MavenDownloader service) {
+        return service.customize(localRepository.toString(), CONNECT_TIMEOUT_MILLIS, REQUEST_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Resolves the given dependencies and their transitive dependencies into a class loader. When a
+     * valid lockfile exists for the dependencies, the class loader is built from it without resolving
+     * them.
+     *
+     * @param dependencies the dependency coordinates
+     * @param repositories comma or whitespace separated remote repository URLs used on a miss (may be
+     *     null)
+     * @return a class loader with the resolved artifacts
+     * @throws MavenResolutionException if the dependencies cannot be resolved
+     */
+    public ClassLoader resolve(List<String> dependencies, String repositories) throws MavenResolutionException {
+        List<Path> artifacts = lockfiles.read(dependencies).orElse(null);
+        if (artifacts == null) {
+            List<MavenArtifact> resolved = resolveMavenArtifacts(dependencies, repositories);
+            lockfiles.write(dependencies, resolved);
+            artifacts = toPaths(resolved);
+        }
+
+        List<URL> urls = new ArrayList<>();
+        for (Path artifact : artifacts) {
+            try {
+                urls.add(artifact.toUri().toURL());
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException("Invalid artifact location: " + artifact, e);
+            }
+        }
+        return new URLClassLoader(urls.toArray(new URL[0]), ArtifactStore.class.getClassLoader());
+    }
+
+    /**
+     * Resolves the given dependencies and their transitive dependencies.
+     *
+     * @param dependencies the dependency coordinates
+     * @param repositories comma or whitespace separated remote repository URLs used on a miss (may be
+     *     null)
+     * @return the resolved artifact files in the local repository
+     * @throws MavenResolutionException if the dependencies cannot be resolved
+     */
+    public List<Path> resolveArtifacts(List<String> dependencies, String repositories) throws MavenResolutionException {
+        return toPaths(resolveMavenArtifacts(dependencies, repositories));
+    }
+
+    private static List<Path> toPaths(List<MavenArtifact> artifacts) {
+        return artifacts.stream().map(a -> a.getFile().toPath()).collect(Collectors.toList());
+    }
+
+    private List<MavenArtifact> resolveMavenArtifacts(List<String> dependencies, String repositories)
+            throws MavenResolutionException {
+        if (dependencies.isEmpty()) {
+            return List.of();
+        }
+
+        if (!offline && !dependencies.stream().allMatch(ArtifactStore::isRelease)) {
+            LOG.debug("Dependencies {} have versions that may change, resolving them remotely", dependencies);
+            return onlineDownloader.resolveArtifacts(dependencies, parseRepositories(repositories), true, false);
+        }
+
+        try {
+            List<MavenArtifact> artifacts = offlineDownloader.resolveArtifacts(dependencies, Set.of(), true, false);
+            LOG.debug("Resolved {} from the local artifact store", dependencies);
+            return artifacts;
+        } catch (MavenResolutionException e) {
+            if (offline) {
+                throw e;
+            }
+
+            LOG.info("Dependencies {} are not all in the local artifact store, resolving them remotely", dependencies);
+            return fetchAndResolve(dependencies, repositories);
+        }
+    }
+
+    private List<MavenArtifact> fetchAndResolve(List<String> dependencies, String repositories)
+            throws MavenResolutionException {
+        final Set<String> remoteRepositories = parseRepositories(repositories);
+
+        List<CompletableFuture<Void>> fetching = new ArrayList<>();
+        for (String dependency : new LinkedHashSet<>(dependencies)) {
+            fetching.add(fetch(dependency, remoteRepositories));
+        }
+        try {
+            CompletableFuture.allOf(fetching.toArray(new CompletableFuture<?>[0]))
+                    .join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof MavenResolutionException mre) {
+                throw mre;
+            }
+            throw e;
+        }
+
+        try {
+            return offlineDownloader.resolveArtifacts(dependencies, Set.of(), true, false);
+        } catch (MavenResolutionException e) {
+            // Mediation picked a version none of the individual fetches needed
+            LOG.debug("Dependencies {} still incomplete after fetching, resolving them at once", dependencies);
+            return onlineDownloader.resolveArtifacts(dependencies, remoteRepositories, true, false);
+        }
+    }
+
+    private CompletableFuture<Void> fetch(String dependency, Set<String> remoteRepositories) {
+        final String key = dependency + " " + remoteRepositories;
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        CompletableFuture<Void> fetch = inFlight.putIfAbsent(key, started);
+        if (fetch != null) {
+            sharedFetches.increment();
+            LOG.debug("Waiting for the download of {} already in progress", dependency);
+            return fetch;
+        }
+
+        fetches.increment();
+        try {
+            downloadExecutor.execute(new Fetch(key, started, () -> {
+                onlineDownloader.resolveArtifacts(List.of(dependency), remoteRepositories, true, false);
+                return null;
+            }));
+        } catch (RejectedExecutionException e) {
+            // The store is closed: waiters of this fetch must not wait forever
+            inFlight.remove(key, started);
+            started.completeExceptionally(e);
+        }
+        return started;
+    }
+
+    /**
+     * Checks if a dependency has a fixed release version, whose artifacts never change once published.
+     *
+     * @param coordinate the dependency coordinate, {@code groupId:artifactId[:type[:classifier]]:version}
+     * @return false for SNAPSHOT versions, version ranges, the LATEST and RELEASE meta versions, and
+     *     coordinates without a version
+     */
+    static boolean isRelease(String coordinate) {
+        String[] parts = coordinate.trim().split(":");
+        if (parts.length < 3) {
+            return false;
+        }
+
+        String version = parts[parts.length - 1];
+        return !version.isEmpty()
+                && !version.endsWith("SNAPSHOT")
+                && !version.equals("LATEST")
+                && !version.equals("RELEASE")
+                && version.chars().noneMatch(c -> c == '[' || c == ']' || c == '(' || c == ')' || c == ',');
+    }
+
+    /**
+     * Parses a repository list.
+     *
+     * @param repositories comma or whitespace separated repository URLs (may be null)
+     * @return the repository URLs, in order
+     */
+    static Set<String> parseRepositories(String repositories) {
+        if (repositories == null || repositories.isBlank()) {
+            return Set.of();
+        }
+
+        return Arrays.stream(repositories.split("[,\\s]+"))
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Returns a snapshot of the remote downloads.
+     *
+     * @return the current download statistics
+     */
+    public Stats getStats() {
+        return new Stats(inFlight.size(), fetches.sum(), sharedFetches.sum());
+    }
+
+    /**
+     * Returns the directory of the local repository.
+     *
+     * @return the local repository
+     */
+    public Path getLocalRepository() {
+        return localRepository;
+    }
+
+    /**
+     * Stops the downloads and the Maven resolvers.
+     */
+    @Override
+    public void close() {
+        for (Runnable pending : downloadExecutor.shutdownNow()) {
+            if (pending instanceof Fetch fetch) {
+                fetch.cancel();
+            }
+        }
+        offlineService.stop();
+        if (onlineService != null) {
+            onlineService.stop();
+        }
+    }
+
+    /**
+     * Download of a single dependency, completing the future its waiters share.
+     */
+    private final class Fetch implements Runnable {
+        private final String key;
+        private final CompletableFuture<Void> future;
+        private final Callable<Void> download;
+
+        private Fetch(String key, CompletableFuture<Void> future, Callable<Void> download) {
+            this.key = key;
+            this.future = future;
+            this.download = download;
+        }
+
+        @Override
+        public void run() {
+            try {
+                download.call();
+                future.complete(null);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                inFlight.remove(key, future);
+            }
+        }
+
+        private void cancel() {
+            inFlight.remove(key, future);
+            future.completeExceptionally(new CancellationException("Artifact store closed"));
+        }
+    }
+
+    /**
+     * Snapshot of the remote downloads.
+     *
+     * @param inFlight the number of dependencies being fetched
+     * @param fetches the number of dependencies fetched from remote repositories
+     * @param sharedFetches the number of requests served by a fetch already in progress
+     */
+    public record Stats(int inFlight, long fetches, long sharedFetches) {}
+}
@@ -0,0 +1,378 @@
+package ai.wanaku.code.engine.camel.downloader;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ai.wanaku.capabilities.sdk.maven.GAV;
+import ai.wanaku.capabilities.sdk.maven.WanakuMavenDownloader;
+
+/**
+ * LRU cache of resolved dependency sets, each mapped to its resolved artifacts and a ready class loader.
+ *
+ * <p>Entries are keyed by the normalized dependency set and the repositories it is resolved from, so the
+ * same dependencies submitted in a different order or with duplicates share an entry, while the same set
+ * resolved from other repositories, which may hold other artifacts, gets its own. A context using a class
+ * loader holds a reference to its entry through a {@link Resolution}: entries are only evicted once no
+ * context uses them anymore, so the cache may temporarily grow past its maximum size while every entry is
+ * in use.
+ *
+ * <p>Sets with a changing version, such as a SNAPSHOT, a version range or LATEST, are resolved for every
+ * context and never cached, just as they are never locked, so new snapshots are always picked up.
+ *
+ * <p>Concurrent requests for a dependency set that is being resolved wait for that resolution and share
+ * its class loader instead of resolving the same set again.
+ *
+ * <p>Class loaders are closed once they can no longer be used: when their entry is evicted, or for an
+ * uncached set, as soon as the single context using them releases them. This frees their open
+ * jar files and lets their classes be unloaded, so metaspace does not grow with every execution.
+ */
+public class DependencyCache {
+    private static final Logger LOG = LoggerFactory.getLogger(DependencyCache.class);
+
+    private final int maxEntries;
+    private final Resolver resolver;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Flight> inFlight = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder resolutionNanos = new LongAdder();
+
+    /**
+     * Creates a new DependencyCache resolving dependencies with the Maven downloader.
+     *
+     * @param maxEntries the maximum number of unused dependency sets kept (0 disables the cache)
+     */
+    public DependencyCache(int maxEntries) {
+        this(maxEntries, DependencyCache::download);
+    }
+
+    /**
+     * Creates a new DependencyCache.
+     *
+     * @param maxEntries the maximum number of unused dependency sets kept (0 disables the cache)
+     * @param resolver resolves the dependency sets missing from the cache
+     */
+    public DependencyCache(int maxEntries, Resolver resolver) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.resolver = resolver;
+    }
+
+    /**
+     * Creates a cache that resolves the dependencies of every context again.
+     *
+     * @return a disabled cache
+     */
+    public static DependencyCache disabled() {
+        return new DependencyCache(0);
+    }
+
+    /**
+     * Resolves the given dependencies with the Maven downloader.
+     *
+     * @param dependencies the dependency coordinates
+     * @param repositories the Maven repositories to use, unused by this downloader
+     * @return a class loader with the resolved artifacts
+     * @throws Exception if the dependencies cannot be resolved
+     */
+    public static ClassLoader download(List<String> dependencies, String repositories) throws Exception {
+        WanakuMavenDownloader mavenDownloader = new WanakuMavenDownloader(DependencyCache.class.getClassLoader());
+        mavenDownloader.download(dependencies.stream().map(GAV::parse).collect(Collectors.toList()));
+        return mavenDownloader.getClassLoader();
+    }
+
+    /**
+     * Computes the key of a dependency set.
+     *
+     * @param dependencies the dependency coordinates
+     * @return the sorted, de-duplicated coordinates joined by commas
+     */
+    public static String key(List<String> dependencies) {
+        return dependencies.stream().distinct().sorted().collect(Collectors.joining(","));
+    }
+
+    /**
+     * Computes the cache key of a dependency set resolved from a list of repositories.
+     *
+     * @param dependencies the dependency coordinates
+     * @param repositories the Maven repositories (may be null)
+     * @return the {@link #key(List)} of the dependencies, followed by the repositories in order
+     */
+    static String key(List<String> dependencies, String repositories) {
+        Set<String> repositoryUrls = ArtifactStore.parseRepositories(repositories);
+        return repositoryUrls.isEmpty()
+                ? key(dependencies)
+                : key(dependencies) + " from " + String.join(",", repositoryUrls);
+    }
+
+    /**
+     * Checks if this cache retains resolved dependency sets.
+     *
+     * @return true if the cache is enabled
+     */
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Returns the resolution of a dependency set, resolving it if it is not cached. Sets with a changing
+     * version are resolved every time.
+     *
+     * @param dependencies the dependency coordinates
+     * @param repositories the Maven repositories to resolve a missing dependency set from (may be null)
+     * @return the resolution, which must be released once the class loader is no longer used
+     * @throws Exception if the dependencies cannot be resolved
+     */
+    public Resolution acquire(List<String> dependencies, String repositories) throws Exception {
+        final String key = key(dependencies, repositories);
+        if (!isEnabled() || !dependencies.stream().allMatch(ArtifactStore::isRelease)) {
+            misses.increment();
+            return new Resolution(new Entry(key, resolve(key, dependencies, repositories), false));
+        }
+
+        Flight pending;
+        final Flight flight = new Flight();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.increment();
+                entry.references++;
+                return new Resolution(entry);
+            }
+
+            pending = inFlight.putIfAbsent(key, flight);
+            if (pending != null) {
+                hits.increment();
+                pending.waiters++;
+            }
+        }
+
+        if (pending != null) {
+            LOG.debug("Waiting for the resolution of dependencies [{}] already in progress", key);
+            return new Resolution(await(pending));
+        }
+
+        misses.increment();
+        final ClassLoader classLoader;
+        try {
+            classLoader = resolve(key, dependencies, repositories);
+        } catch (Throwable t) {
+            synchronized (entries) {
+                inFlight.remove(key);
+            }
+            flight.result.completeExceptionally(t);
+            throw t;
+        }
+
+        final Entry entry = new Entry(key, classLoader, true);
+        final List<Entry> evicted;
+        synchronized (entries) {
+            inFlight.remove(key);
+            // The waiters take their reference now, so the entry cannot be evicted before they wake up
+            entry.references = 1 + flight.waiters;
+            entries.put(key, entry);
+            evicted = evictUnused();
+        }
+        close(evicted);
+        flight.result.complete(entry);
+        return new Resolution(entry);
+    }
+
+    private ClassLoader resolve(String key, List<String> dependencies, String repositories) throws Exception {
+        final long start = System.nanoTime();
+        final ClassLoader classLoader =
+                resolver.resolve(dependencies.stream().distinct().collect(Collectors.toList()), repositories);
+        final long elapsed = System.nanoTime() - start;
+        resolutionNanos.add(elapsed);
+        LOG.debug("Resolved dependencies [{}] in {} ms", key, elapsed / 1_000_000);
+        return classLoader;
+    }
+
+    private static Entry await(Flight flight) throws Exception {
+        try {
+            return flight.result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private void release(Entry entry) {
+        if (!entry.cached) {
+            entry.close();
+            return;
+        }
+
+        final List<Entry> evicted;
+        synchronized (entries) {
+            entry.references--;
+            evicted = evictUnused();
+        }
+        close(evicted);
+    }
+
+    private List<Entry> evictUnused() {
+        List<Entry> evicted = new ArrayList<>();
+        Iterator<Entry> it = entries.values().iterator();
+        int excess = entries.size() - maxEntries;
+        while (excess > 0 && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.references == 0) {
+                it.remove();
+                evictions.increment();
+                excess--;
+                evicted.add(entry);
+                LOG.debug("Evicted resolved dependencies [{}]", entry.key);
+            }
+        }
+        return evicted;
+    }
+
+    private static void close(List<Entry> evicted) {
+        for (Entry entry : evicted) {
+            entry.close();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache usage.
+     *
+     * @return the current cache statistics
+     */
+    public Stats getStats() {
+        final int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+
+        final long resolutions = misses.sum();
+        return new Stats(
+                size,
+                hits.sum(),
+                resolutions,
+                evictions.sum(),
+                resolutions == 0 ? 0 : resolutionNanos.sum() / resolutions / 1_000_000);
+    }
+
+    /**
+     * Resolves a dependency set to a class loader.
+     */
+    @FunctionalInterface
+    public interface Resolver {
+        /**
+         * Resolves the given dependencies.
+         *
+         * @param dependencies the dependency coordinates
+         * @param repositories the Maven repositories to use (may be null)
+         * @return a class loader with the resolved artifacts
+         * @throws Exception if the dependencies cannot be resolved
+         */
+        ClassLoader resolve(List<String> dependencies, String repositories) throws Exception;
+    }
+
+    /**
+     * A reference to a resolved dependency set.
+     */
+    public final class Resolution {
+        private final Entry entry;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Resolution(Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * Returns the class loader of the resolved dependencies.
+         *
+         * @return the class loader
+         */
+        public ClassLoader getClassLoader() {
+            return entry.classLoader;
+        }
+
+        /**
+         * Returns the resolved artifacts.
+         *
+         * @return the artifact locations, empty if the class loader does not expose them
+         */
+        public List<URL> getArtifacts() {
+            return entry.artifacts;
+        }
+
+        /**
+         * Gives up this reference, allowing the entry to be evicted and its class loader closed once it is
+         * no longer used. Calling this method more than once has no effect.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                DependencyCache.this.release(entry);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the cache usage.
+     *
+     * @param size the number of cached dependency sets
+     * @param hits the number of resolutions served from the cache or shared with a resolution in progress
+     * @param misses the number of dependency sets resolved with Maven
+     * @param evictions the number of dependency sets evicted
+     * @param averageResolutionMillis the average time spent resolving a dependency set with Maven
+     */
+    public record Stats(int size, long hits, long misses, long evictions, long averageResolutionMillis) {}
+
+    private static final class Flight {
+        private final CompletableFuture<Entry> result = new CompletableFuture<>();
+        private int waiters;
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final ClassLoader classLoader;
+        private final List<URL> artifacts;
+        private final boolean cached;
+        private int references;
+
+        private Entry(String key, ClassLoader classLoader, boolean cached) {
+            this.key = key;
+            this.classLoader = classLoader;
+            this.cached = cached;
+            this.artifacts = classLoader instanceof URLClassLoader urlClassLoader
+                    ? List.of(urlClassLoader.getURLs())
+                    : List.of();
+        }
+
+        private void close() {
+            // Never close the engine class loader, which a resolver may hand out when there is nothing to load
+            if (classLoader instanceof URLClassLoader urlClassLoader
+                    && classLoader != DependencyCache.class.getClassLoader()) {
+                try {
+                    urlClassLoader.close();
+                    LOG.debug("Closed the class loader of dependencies [{}]", key);
+                } catch (IOException e) {
+                    LOG.warn("Unable to close the class loader of dependencies [{}]: {}", key, e.getMessage());
+                }
+            }
+        }
+    }
+}
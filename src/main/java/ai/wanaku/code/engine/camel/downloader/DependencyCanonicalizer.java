@@ -0,0 +1,195 @@
+package ai.wanaku.code.engine.camel.downloader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import org.apache.camel.catalog.CamelCatalog;
+import org.apache.camel.catalog.DefaultCamelCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rewrites dependency lists into a canonical form, so equivalent lists share every cache keyed on them.
+ *
+ * <p>Coordinates are trimmed, de-duplicated and sorted. Camel artifacts without a version get the Camel
+ * version of the engine, as a BOM would. Camel artifacts with another version are aligned to it, with a
+ * log line, when they are released with Camel itself, that is when the Camel catalog knows them: mixing
+ * them with the engine Camel jars would fail at runtime. Other artifacts of the Camel group keep their
+ * version. Artifacts already on the class path of the engine are dropped: dependencies are loaded by a
+ * child of the engine class loader, which always finds the engine copy first, so resolving them again
+ * only loads redundant jars.
+ */
+public class DependencyCanonicalizer {
+    private static final Logger LOG = LoggerFactory.getLogger(DependencyCanonicalizer.class);
+
+    /** The group of the Camel artifacts aligned to the engine version. */
+    public static final String CAMEL_GROUP_ID = "org.apache.camel";
+
+    private static final DependencyCanonicalizer ENGINE =
+            new DependencyCanonicalizer(DependencyCanonicalizer.class.getClassLoader());
+
+    private final ClassLoader classLoader;
+    private final String camelVersion;
+    private final Supplier<Set<String>> camelArtifactIdsSupplier;
+    private volatile Set<String> camelArtifactIds;
+
+    /**
+     * Creates a new DependencyCanonicalizer, knowing the Camel artifacts from the Camel catalog.
+     *
+     * @param classLoader the class loader whose artifacts are dropped and whose Camel version is used
+     */
+    public DependencyCanonicalizer(ClassLoader classLoader) {
+        this(classLoader, DependencyCanonicalizer::catalogArtifactIds);
+    }
+
+    /**
+     * Creates a new DependencyCanonicalizer.
+     *
+     * @param classLoader the class loader whose artifacts are dropped and whose Camel version is used
+     * @param camelArtifactIds supplies the ids of the artifacts released with Camel, called at most once
+     *     and only when a Camel artifact has a version of its own
+     */
+    public DependencyCanonicalizer(ClassLoader classLoader, Supplier<Set<String>> camelArtifactIds) {
+        this.classLoader = classLoader;
+        this.camelVersion = providedVersion(CAMEL_GROUP_ID, "camel-api");
+        this.camelArtifactIdsSupplier = camelArtifactIds;
+    }
+
+    private static Set<String> catalogArtifactIds() {
+        // Loading every model takes a couple of seconds, hence only done on first need
+        final long start = System.nanoTime();
+        CamelCatalog catalog = new DefaultCamelCatalog(true);
+        Set<String> artifactIds = new HashSet<>();
+        catalog.findComponentNames()
+                .forEach(name -> artifactIds.add(catalog.componentModel(name).getArtifactId()));
+        catalog.findDataFormatNames()
+                .forEach(name -> artifactIds.add(catalog.dataFormatModel(name).getArtifactId()));
+        catalog.findLanguageNames()
+                .forEach(name -> artifactIds.add(catalog.languageModel(name).getArtifactId()));
+        catalog.findOtherNames()
+                .forEach(name -> artifactIds.add(catalog.otherModel(name).getArtifactId()));
+        LOG.debug(
+                "Loaded {} Camel artifacts from the catalog in {} ms",
+                artifactIds.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return artifactIds;
+    }
+
+    /**
+     * Returns the canonicalizer of the engine class path.
+     *
+     * @return the engine canonicalizer
+     */
+    public static DependencyCanonicalizer engine() {
+        return ENGINE;
+    }
+
+    /**
+     * Returns the Camel version the Camel artifacts are aligned to.
+     *
+     * @return the Camel version, or null if Camel is not on the class path
+     */
+    public String getCamelVersion() {
+        return camelVersion;
+    }
+
+    /**
+     * Canonicalizes a dependency list.
+     *
+     * @param dependencies the dependency coordinates, as submitted
+     * @return the coordinates left to resolve, sorted and without duplicates
+     */
+    public List<String> canonicalize(Collection<String> dependencies) {
+        TreeSet<String> canonical = new TreeSet<>();
+        for (String dependency : dependencies) {
+            String coordinate = align(dependency.trim());
+            if (coordinate != null) {
+                canonical.add(coordinate);
+            }
+        }
+        return List.copyOf(canonical);
+    }
+
+    private String align(String dependency) {
+        if (dependency.isEmpty()) {
+            return null;
+        }
+
+        String[] parts = dependency.split(":");
+        if (parts.length < 2 || parts.length > 3) {
+            // Left for the resolver to accept or reject
+            return dependency;
+        }
+
+        if (isProvided(parts[0], parts[1])) {
+            LOG.debug("Dropping dependency {} already provided by the engine", dependency);
+            return null;
+        }
+
+        if (!CAMEL_GROUP_ID.equals(parts[0]) || camelVersion == null) {
+            return dependency;
+        }
+        if (parts.length == 3) {
+            if (parts[2].equals(camelVersion)) {
+                return dependency;
+            }
+            if (!camelArtifactIds().contains(parts[1])) {
+                LOG.debug("Keeping the version of dependency {}, it is not released with Camel", dependency);
+                return dependency;
+            }
+            LOG.info("Aligning dependency {} to the engine Camel version {}", dependency, camelVersion);
+        }
+        return parts[0] + ":" + parts[1] + ":" + camelVersion;
+    }
+
+    private Set<String> camelArtifactIds() {
+        Set<String> artifactIds = camelArtifactIds;
+        if (artifactIds == null) {
+            synchronized (this) {
+                artifactIds = camelArtifactIds;
+                if (artifactIds == null) {
+                    artifactIds = Set.copyOf(camelArtifactIdsSupplier.get());
+                    camelArtifactIds = artifactIds;
+                }
+            }
+        }
+        return artifactIds;
+    }
+
+    /**
+     * Checks if an artifact is on the class path.
+     *
+     * @param groupId the group of the artifact
+     * @param artifactId the artifact
+     * @return true if the class path already contains the artifact, in any version
+     */
+    public boolean isProvided(String groupId, String artifactId) {
+        return classLoader.getResource(pomProperties(groupId, artifactId)) != null;
+    }
+
+    private String providedVersion(String groupId, String artifactId) {
+        try (InputStream stream = classLoader.getResourceAsStream(pomProperties(groupId, artifactId))) {
+            if (stream == null) {
+                return null;
+            }
+
+            Properties properties = new Properties();
+            properties.load(stream);
+            return properties.getProperty("version");
+        } catch (IOException e) {
+            LOG.warn("Unable to read the version of {}:{}: {}", groupId, artifactId, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String pomProperties(String groupId, String artifactId) {
+        // Camel and most Maven-built artifacts ship their pom.properties
+        return "META-INF/maven/" + groupId + "/" + artifactId + "/pom.properties";
+    }
+}
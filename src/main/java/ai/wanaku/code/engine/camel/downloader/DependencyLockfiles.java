@@ -0,0 +1,213 @@
+package ai.wanaku.code.engine.camel.downloader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import org.apache.camel.tooling.maven.MavenArtifact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists resolved dependency closures, so their class path can be rebuilt after a restart without
+ * running a Maven resolution.
+ *
+ * <p>Each closure is stored in its own lockfile, named after the SHA-256 hash of the normalized
+ * dependency list, which records the coordinates, location, size and SHA-256 checksum of every
+ * resolved artifact. A lockfile is only used when all its artifacts are still present with the
+ * recorded size. Artifacts modified after the lockfile was written are checksummed again, and any
+ * mismatch discards the lockfile so the dependencies are resolved anew.
+ *
+ * <p>Only dependency lists made of fixed release versions are locked. A SNAPSHOT, a version range or a
+ * LATEST or RELEASE version may resolve to other artifacts over time, so such lists, as well as lists
+ * whose closure resolved to a SNAPSHOT, are always resolved.
+ */
+public class DependencyLockfiles {
+    private static final Logger LOG = LoggerFactory.getLogger(DependencyLockfiles.class);
+
+    /** File extension of the lockfiles. */
+    public static final String LOCKFILE_EXTENSION = ".lock";
+
+    private static final String DEPENDENCIES_HEADER = "dependencies";
+    private static final String SEPARATOR = "\t";
+
+    private final Path directory;
+
+    /**
+     * Creates a new DependencyLockfiles.
+     *
+     * @param directory the directory holding the lockfiles, created on demand
+     */
+    public DependencyLockfiles(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates an instance that never reads nor writes lockfiles.
+     *
+     * @return disabled lockfiles
+     */
+    public static DependencyLockfiles disabled() {
+        return new DependencyLockfiles(null);
+    }
+
+    /**
+     * Checks if lockfiles are read and written.
+     *
+     * @return true if lockfiles are enabled
+     */
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Returns the lockfile of a dependency list.
+     *
+     * @param dependencies the dependency coordinates
+     * @return the location of the lockfile
+     */
+    Path lockfile(List<String> dependencies) {
+        return directory.resolve(
+                sha256(DependencyCache.key(dependencies).getBytes(StandardCharsets.UTF_8)) + LOCKFILE_EXTENSION);
+    }
+
+    /**
+     * Reads the locked artifacts of a dependency list.
+     *
+     * @param dependencies the dependency coordinates
+     * @return the artifact files, or empty if there is no lockfile or it no longer matches the files
+     */
+    public Optional<List<Path>> read(List<String> dependencies) {
+        if (!isLockable(dependencies)) {
+            return Optional.empty();
+        }
+
+        final Path lockfile = lockfile(dependencies);
+        if (!Files.isRegularFile(lockfile)) {
+            return Optional.empty();
+        }
+
+        try {
+            final FileTime locked = Files.getLastModifiedTime(lockfile);
+            final List<String> lines = Files.readAllLines(lockfile, StandardCharsets.UTF_8);
+            if (lines.isEmpty()
+                    || !lines.get(0).equals(DEPENDENCIES_HEADER + SEPARATOR + DependencyCache.key(dependencies))) {
+                LOG.warn("Ignoring lockfile {} recorded for other dependencies", lockfile);
+                return Optional.empty();
+            }
+
+            List<Path> artifacts = new ArrayList<>();
+            for (String line : lines.subList(1, lines.size())) {
+                String[] fields = line.split(SEPARATOR);
+                if (fields.length != 4) {
+                    LOG.warn("Ignoring malformed lockfile {}", lockfile);
+                    return Optional.empty();
+                }
+
+                Path file = Path.of(fields[3]);
+                if (!Files.isRegularFile(file) || Files.size(file) != Long.parseLong(fields[2])) {
+                    LOG.info("Artifact {} locked in {} is missing or changed", fields[0], lockfile);
+                    return Optional.empty();
+                }
+                if (Files.getLastModifiedTime(file).compareTo(locked) > 0
+                        && !sha256(file).equals(fields[1])) {
+                    LOG.warn("Artifact {} locked in {} does not match its checksum", fields[0], lockfile);
+                    return Optional.empty();
+                }
+                artifacts.add(file);
+            }
+
+            LOG.debug("Rebuilt the class path of {} from {}", dependencies, lockfile);
+            return Optional.of(artifacts);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Unable to read lockfile {}: {}", lockfile, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Records the resolved artifacts of a dependency list. Failures are logged, as the lockfile is only
+     * an optimization.
+     *
+     * @param dependencies the dependency coordinates
+     * @param artifacts the resolved artifacts
+     */
+    public void write(List<String> dependencies, List<MavenArtifact> artifacts) {
+        if (!isLockable(dependencies)) {
+            return;
+        }
+        if (artifacts.stream().anyMatch(a -> !ArtifactStore.isRelease(a.getGav().toString()))) {
+            LOG.debug("Not locking {}, its closure has SNAPSHOT artifacts", dependencies);
+            return;
+        }
+
+        final Path lockfile = lockfile(dependencies);
+        try {
+            StringBuilder content = new StringBuilder()
+                    .append(DEPENDENCIES_HEADER)
+                    .append(SEPARATOR)
+                    .append(DependencyCache.key(dependencies))
+                    .append('\n');
+            for (MavenArtifact artifact : artifacts) {
+                Path file = artifact.getFile().toPath().toAbsolutePath();
+                content.append(artifact.getGav())
+                        .append(SEPARATOR)
+                        .append(sha256(file))
+                        .append(SEPARATOR)
+                        .append(Files.size(file))
+                        .append(SEPARATOR)
+                        .append(file)
+                        .append('\n');
+            }
+
+            Files.createDirectories(directory);
+            // Written aside and moved, so a concurrent reader never sees a partial lockfile
+            Path temp = Files.createTempFile(directory, "lockfile", ".tmp");
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            Files.move(temp, lockfile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.debug("Recorded {} artifacts of {} in {}", artifacts.size(), dependencies, lockfile);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Unable to write lockfile {}: {}", lockfile, e.getMessage());
+        }
+    }
+
+    private boolean isLockable(List<String> dependencies) {
+        return isEnabled() && !dependencies.isEmpty() && dependencies.stream().allMatch(ArtifactStore::isRelease);
+    }
+
+    private static String sha256(Path file) {
+        final MessageDigest digest = newDigest();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String sha256(byte[] bytes) {
+        return HexFormat.of().formatHex(newDigest().digest(bytes));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ai.wanaku.code.engine.camel.downloader;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+import org.apache.camel.tooling.maven.MavenResolutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Warms the local artifact store in the background.
+ *
+ * <p>Each artifact is resolved on its own, so a single unavailable artifact does not prevent the others
+ * from being stored. Failures are only logged: the execution needing the artifact resolves it again and
+ * reports the error to the client.
+ */
+public class DependencyPrefetcher implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(DependencyPrefetcher.class);
+
+    private final ArtifactStore artifactStore;
+    private final String repositories;
+    private Thread thread;
+
+    /**
+     * Creates a new DependencyPrefetcher.
+     *
+     * @param artifactStore the store to warm
+     * @param repositories the Maven repositories to download missing artifacts from (may be null)
+     */
+    public DependencyPrefetcher(ArtifactStore artifactStore, String repositories) {
+        this.artifactStore = artifactStore;
+        this.repositories = repositories;
+    }
+
+    /**
+     * Starts resolving artifacts in the background.
+     *
+     * @param coordinates supplies the artifact coordinates, called on the background thread
+     */
+    public synchronized void start(Supplier<? extends Collection<String>> coordinates) {
+        if (thread != null) {
+            return;
+        }
+
+        thread = new Thread(() -> prefetch(List.copyOf(coordinates.get())), "cee-dependency-prefetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void prefetch(List<String> coordinates) {
+        if (coordinates.isEmpty()) {
+            LOG.debug("No dependencies to prefetch");
+            return;
+        }
+
+        LOG.info("Prefetching {} dependencies into the local artifact store", coordinates.size());
+        final long start = System.nanoTime();
+        int failed = 0;
+        for (String coordinate : coordinates) {
+            if (Thread.currentThread().isInterrupted()) {
+                LOG.debug("Dependency prefetch interrupted");
+                return;
+            }
+
+            try {
+                artifactStore.resolveArtifacts(List.of(coordinate), repositories);
+            } catch (MavenResolutionException | RuntimeException e) {
+                failed++;
+                LOG.warn("Unable to prefetch {}: {}", coordinate, e.getMessage());
+            }
+        }
+
+        LOG.info(
+                "Prefetched {} of {} dependencies in {} ms",
+                coordinates.size() - failed,
+                coordinates.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Stops a prefetch still in progress.
+     */
+    @Override
+    public synchronized void close() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
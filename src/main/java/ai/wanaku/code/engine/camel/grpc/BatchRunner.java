@@ -0,0 +1,227 @@
+package ai.wanaku.code.engine.camel.grpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.apache.camel.ProducerTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+/**
+ * Pushes a list of bodies through the {@code direct:start} endpoint of an already loaded route set.
+ *
+ * <p>Up to {@code parallelism} bodies are in flight at any time. Each body is sent as soon as a previous
+ * one completes, and every result or failure is reported to the item listener in completion order.
+ */
+public class BatchRunner {
+    private static final Logger LOG = LoggerFactory.getLogger(BatchRunner.class);
+
+    /** Maximum number of bodies of a batch. */
+    public static final int MAX_BODIES = 10_000;
+
+    private final ProducerTemplate producerTemplate;
+    private final List<String> bodies;
+    private final int parallelism;
+    private final ItemListener listener;
+    private final BooleanSupplier aborted;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger remaining;
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final CompletableFuture<Result> result = new CompletableFuture<>();
+
+    /**
+     * Creates a new BatchRunner.
+     *
+     * @param producerTemplate the template used to send the bodies
+     * @param bodies the bodies to send
+     * @param parallelism the maximum number of bodies in flight
+     * @param listener receives the outcome of every item
+     * @param aborted tells whether the batch was aborted, in which case no further body is sent
+     */
+    public BatchRunner(
+            ProducerTemplate producerTemplate,
+            List<String> bodies,
+            int parallelism,
+            ItemListener listener,
+            BooleanSupplier aborted) {
+        this.producerTemplate = producerTemplate;
+        this.bodies = bodies;
+        this.parallelism = Math.max(1, parallelism);
+        this.listener = listener;
+        this.aborted = aborted;
+        this.remaining = new AtomicInteger(bodies.size());
+    }
+
+    /**
+     * Parses the bodies of a batch request.
+     *
+     * @param bodies a JSON or YAML list of bodies. Scalar items are used as text, structured bodies must
+     *     be passed as encoded strings
+     * @return the bodies, in order
+     * @throws IllegalArgumentException if the value is not a list of scalars, or has more than
+     *     {@link #MAX_BODIES} items
+     */
+    public static List<String> parseBodies(String bodies) {
+        final Object parsed;
+        try {
+            parsed = new Yaml(new SafeConstructor(new LoaderOptions())).load(bodies);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Batch bodies are not a valid JSON or YAML list: " + e.getMessage(), e);
+        }
+
+        if (!(parsed instanceof List<?> items)) {
+            throw new IllegalArgumentException("Batch bodies must be a JSON or YAML list");
+        }
+        if (items.size() > MAX_BODIES) {
+            throw new IllegalArgumentException(
+                    "Batch has " + items.size() + " bodies, at most " + MAX_BODIES + " are allowed");
+        }
+
+        List<String> ret = new ArrayList<>(items.size());
+        for (Object item : items) {
+            if (item instanceof Map<?, ?> || item instanceof List<?>) {
+                throw new IllegalArgumentException(
+                        "Batch body " + ret.size() + " is not a scalar, structured bodies must be encoded as strings");
+            }
+            ret.add(item == null ? "" : item.toString());
+        }
+        return ret;
+    }
+
+    /**
+     * Starts sending the bodies.
+     *
+     * @return a future completed once every body was processed, or once the in-flight bodies of an aborted
+     *     batch completed
+     */
+    public CompletableFuture<Result> run() {
+        if (bodies.isEmpty()) {
+            result.complete(new Result(0, 0, 0));
+            return result;
+        }
+
+        for (int i = 0; i < Math.min(parallelism, bodies.size()); i++) {
+            sendNext();
+        }
+        return result;
+    }
+
+    private void sendNext() {
+        while (true) {
+            final int index = next.getAndIncrement();
+            if (index >= bodies.size()) {
+                return;
+            }
+
+            if (aborted.getAsBoolean()) {
+                // Account for the bodies that will never be sent
+                skip(index);
+                return;
+            }
+
+            CompletableFuture<String> reply;
+            try {
+                reply = producerTemplate.asyncRequestBody("direct:start", bodies.get(index), String.class);
+            } catch (RuntimeException e) {
+                reply = CompletableFuture.failedFuture(e);
+            }
+
+            if (!reply.isDone()) {
+                reply.whenComplete((body, error) -> {
+                    if (onReply(index, body, error)) {
+                        sendNext();
+                    }
+                });
+                return;
+            }
+
+            // Replies that are already there are handled in this loop rather than in a callback, so that a
+            // long run of them does not nest one call per body on the stack
+            String body = null;
+            Throwable error = null;
+            try {
+                body = reply.join();
+            } catch (CompletionException | CancellationException e) {
+                error = e;
+            }
+            if (!onReply(index, body, error)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reports the outcome of an item.
+     *
+     * @return true if bodies remain to be processed
+     */
+    private boolean onReply(int index, String body, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause != null) {
+            failed.incrementAndGet();
+        }
+
+        try {
+            listener.onItem(index, body, cause);
+        } catch (RuntimeException e) {
+            // A listener failing, for example on a cancelled call, must not stall the remaining items
+            LOG.debug("Batch item listener failed on item {}: {}", index, e.getMessage(), e);
+        }
+
+        if (remaining.decrementAndGet() == 0) {
+            complete();
+            return false;
+        }
+        return true;
+    }
+
+    private void skip(int index) {
+        // This item, plus the ones no other lane claimed yet
+        int unclaimed = Math.max(0, bodies.size() - next.getAndSet(bodies.size()));
+        int count = 1 + unclaimed;
+        skipped.addAndGet(count);
+        if (remaining.addAndGet(-count) == 0) {
+            complete();
+        }
+    }
+
+    private void complete() {
+        int failures = failed.get();
+        int skips = skipped.get();
+        result.complete(new Result(bodies.size() - failures - skips, failures, skips));
+    }
+
+    /**
+     * Receives the outcome of each batch item.
+     */
+    @FunctionalInterface
+    public interface ItemListener {
+        /**
+         * Called once an item completed.
+         *
+         * @param index the position of the item in the batch
+         * @param reply the route reply, or null if the item failed
+         * @param error the failure, or null if the item succeeded
+         */
+        void onItem(int index, String reply, Throwable error);
+    }
+
+    /**
+     * Outcome of a batch.
+     *
+     * @param succeeded the number of items processed successfully
+     * @param failed the number of items that failed
+     * @param skipped the number of items never sent because the batch was aborted
+     */
+    public record Result(int succeeded, int failed, int skipped) {}
+}
@@ -0,0 +1,159 @@
+package ai.wanaku.code.engine.camel.grpc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import ai.wanaku.core.exchange.v1.CodeExecutionReply;
+import ai.wanaku.core.exchange.v1.ExecutionStatus;
+import ai.wanaku.core.exchange.v1.OutputType;
+
+/**
+ * Streams a route reply to the client as a sequence of bounded {@code STDOUT} chunks.
+ *
+ * <p>The reply is read incrementally, one chunk at a time, so a large body produced as a stream by the
+ * route never has to be held in memory as a whole. When the observer is a {@link ServerCallStreamObserver},
+ * chunks are only sent while the transport is ready: once its buffer fills up the writer stops and resumes
+ * from {@link #signal()}, which must be called from the on-ready handler of the call.
+ *
+ * <p>Only the drain loop touches the reader: a cancellation is picked up on its next pass, which closes
+ * the reader and reports the completion.
+ */
+public class ChunkedReplyWriter {
+    private static final Logger LOG = LoggerFactory.getLogger(ChunkedReplyWriter.class);
+
+    private final Reader reader;
+    private final char[] buffer;
+    private final StreamObserver<CodeExecutionReply> responseObserver;
+    private final Object lock;
+    private final Executor executor;
+    private final Consumer<Throwable> onDone;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean done = new AtomicBoolean();
+    private final AtomicReference<Throwable> cancelled = new AtomicReference<>();
+    private long chunks;
+
+    /**
+     * Creates a new ChunkedReplyWriter.
+     *
+     * @param reader the reply body
+     * @param chunkSize the maximum number of characters per reply
+     * @param responseObserver the observer receiving the chunks
+     * @param lock the lock guarding every call to the observer
+     * @param executor the executor the chunks are written on
+     * @param onDone called once, with null after the last chunk was sent, or with the error that stopped
+     *     the writer
+     */
+    public ChunkedReplyWriter(
+            Reader reader,
+            int chunkSize,
+            StreamObserver<CodeExecutionReply> responseObserver,
+            Object lock,
+            Executor executor,
+            Consumer<Throwable> onDone) {
+        this.reader = reader;
+        this.buffer = new char[Math.max(1, chunkSize)];
+        this.responseObserver = responseObserver;
+        this.lock = lock;
+        this.executor = executor;
+        this.onDone = onDone;
+    }
+
+    /**
+     * Schedules writing as many chunks as the transport accepts.
+     */
+    public void signal() {
+        // Only one drain loop runs at a time, signals received meanwhile make it run one more round
+        if (pending.getAndIncrement() == 0) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Stops the writer. The chunks already sent stay sent.
+     *
+     * <p>The reader is closed and the completion callback called by the drain loop, once a read in
+     * progress returns.
+     *
+     * @param cause the reason reported to the completion callback
+     */
+    public void cancel(Throwable cause) {
+        if (cancelled.compareAndSet(null, cause)) {
+            signal();
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        while (true) {
+            try {
+                while (!done.get() && isReady()) {
+                    int read = reader.read(buffer);
+                    if (read < 0) {
+                        LOG.debug("Sent the reply in {} chunks", chunks);
+                        finish(null);
+                        break;
+                    }
+
+                    synchronized (lock) {
+                        // The next check of the loop finishes the cancelled writer
+                        if (cancelled.get() != null) {
+                            continue;
+                        }
+                        responseObserver.onNext(CodeExecutionReply.newBuilder()
+                                .setOutputType(OutputType.OUTPUT_TYPE_STDOUT)
+                                .setStatus(ExecutionStatus.EXECUTION_STATUS_RUNNING)
+                                .addContent(new String(buffer, 0, read))
+                                .build());
+                    }
+                    chunks++;
+                }
+            } catch (IOException | RuntimeException e) {
+                finish(e);
+            }
+
+            missed = pending.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private boolean isReady() {
+        final Throwable cause = cancelled.get();
+        if (cause != null) {
+            finish(cause);
+            return false;
+        }
+        if (responseObserver instanceof ServerCallStreamObserver<?> serverObserver) {
+            if (serverObserver.isCancelled()) {
+                finish(new CancellationException("Call cancelled while streaming the reply"));
+                return false;
+            }
+            return serverObserver.isReady();
+        }
+        return true;
+    }
+
+    private void finish(Throwable error) {
+        if (!done.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            reader.close();
+        } catch (IOException e) {
+            LOG.debug("Failed to close the reply reader: {}", e.getMessage());
+        }
+        onDone.accept(error);
+    }
+}
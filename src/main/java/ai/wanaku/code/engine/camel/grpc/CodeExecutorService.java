@@ -1,16 +1,37 @@
 package ai.wanaku.code.engine.camel.grpc;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 import org.apache.camel.CamelContext;
 import org.apache.camel.ProducerTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import ai.wanaku.capabilities.sdk.services.ServicesHttpClient;
 import ai.wanaku.code.engine.camel.WanakuCamelManager;
+import ai.wanaku.code.engine.camel.context.CamelContextPool;
+import ai.wanaku.code.engine.camel.context.RouteCache;
+import ai.wanaku.code.engine.camel.limiter.AdaptiveConcurrencyLimiter;
+import ai.wanaku.code.engine.camel.session.ExecutionSessionManager;
+import ai.wanaku.code.engine.camel.util.ExecutorModel;
 import ai.wanaku.core.exchange.v1.CodeExecutionReply;
 import ai.wanaku.core.exchange.v1.CodeExecutionRequest;
 import ai.wanaku.core.exchange.v1.CodeExecutorGrpc;
@@ -21,14 +42,132 @@ import com.google.protobuf.Timestamp;
 public class CodeExecutorService extends CodeExecutorGrpc.CodeExecutorImplBase {
     private static final Logger LOG = LoggerFactory.getLogger(CodeExecutorService.class);
 
+    /** Thread name prefix of the execution executor threads. */
+    public static final String EXECUTION_THREAD_PREFIX = "cee-execution-";
+
+    /** Request argument selecting how the route reply is sent back. */
+    public static final String ARG_OUTPUT_MODE = "outputMode";
+
+    /** Output mode streaming the route reply as a sequence of bounded chunks. */
+    public static final String OUTPUT_MODE_CHUNKED = "chunked";
+
+    /** Request argument holding the JSON or YAML list of bodies of a batch execution. */
+    public static final String ARG_BODIES = "bodies";
+
+    /** Request argument holding the number of batch bodies processed concurrently. */
+    public static final String ARG_PARALLELISM = "parallelism";
+
+    /** Request argument selecting a session action: deploy, invoke or close. */
+    public static final String ARG_SESSION_ACTION = "sessionAction";
+
+    /** Request argument holding the id of the session to invoke or close. */
+    public static final String ARG_SESSION_ID = "sessionId";
+
+    /** Session action loading the submitted routes into a new session and replying with its id. */
+    public static final String SESSION_ACTION_DEPLOY = "deploy";
+
+    /** Session action running the routes of an existing session, the request code is ignored. */
+    public static final String SESSION_ACTION_INVOKE = "invoke";
+
+    /** Session action closing an existing session. */
+    public static final String SESSION_ACTION_CLOSE = "close";
+
+    /** Default upper bound of the parallelism a batch execution may request. */
+    public static final int DEFAULT_BATCH_MAX_PARALLELISM = 8;
+
+    /** Default maximum number of characters per chunk of a chunked reply. */
+    public static final int DEFAULT_REPLY_CHUNK_SIZE = 64 * 1024;
+
+    /** Exit code of executions that ran out of time, following the convention of the timeout command. */
+    private static final int EXIT_CODE_TIMEOUT = 124;
+
+    /**
+     * Matches {@code file:} and {@code resource:file:} locations that are not absolute, such as
+     * {@code file:data/in} or {@code resource:file:./script.groovy}. Placeholders count as relative.
+     */
+    private static final Pattern RELATIVE_FILE_LOCATION = Pattern.compile("(?<![\\w.-])file:(?://)?(?=[^/\\s])");
+
     private final ServicesHttpClient servicesHttpClient;
     private final Path dataDir;
     private final String defaultRepositories;
+    private final CamelContextPool contextPool;
+    private final RouteCache routeCache;
+    private final boolean routesInMemory;
+    private final Executor executionExecutor;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final ExecutionWatchdog watchdog;
+    private final int replyChunkSize;
+    private final int batchMaxParallelism;
+    private final ExecutionSessionManager sessionManager;
 
     public CodeExecutorService(ServicesHttpClient servicesHttpClient, Path dataDir, String defaultRepositories) {
+        this(servicesHttpClient, dataDir, defaultRepositories, CamelContextPool.disabled());
+    }
+
+    public CodeExecutorService(
+            ServicesHttpClient servicesHttpClient,
+            Path dataDir,
+            String defaultRepositories,
+            CamelContextPool contextPool) {
+        this(
+                servicesHttpClient,
+                dataDir,
+                defaultRepositories,
+                contextPool,
+                new RouteCache(0, contextPool),
+                false,
+                newExecutionExecutor(),
+                AdaptiveConcurrencyLimiter.unlimited(),
+                new ExecutionWatchdog(Duration.ZERO),
+                DEFAULT_REPLY_CHUNK_SIZE,
+                DEFAULT_BATCH_MAX_PARALLELISM,
+                ExecutionSessionManager.disabled());
+    }
+
+    public CodeExecutorService(
+            ServicesHttpClient servicesHttpClient,
+            Path dataDir,
+            String defaultRepositories,
+            CamelContextPool contextPool,
+            RouteCache routeCache,
+            boolean routesInMemory,
+            Executor executionExecutor,
+            AdaptiveConcurrencyLimiter concurrencyLimiter,
+            ExecutionWatchdog watchdog,
+            int replyChunkSize,
+            int batchMaxParallelism,
+            ExecutionSessionManager sessionManager) {
         this.servicesHttpClient = servicesHttpClient;
         this.dataDir = dataDir;
         this.defaultRepositories = defaultRepositories;
+        this.contextPool = contextPool;
+        this.routeCache = routeCache;
+        this.routesInMemory = routesInMemory;
+        this.executionExecutor = executionExecutor;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.watchdog = watchdog;
+        this.replyChunkSize = replyChunkSize;
+        this.batchMaxParallelism = batchMaxParallelism;
+        this.sessionManager = sessionManager;
+    }
+
+    /**
+     * Creates the default executor running the execution pipelines.
+     *
+     * @return an unbounded executor backed by daemon platform threads
+     */
+    public static ExecutorService newExecutionExecutor() {
+        return ExecutorModel.PLATFORM.newExecutor(EXECUTION_THREAD_PREFIX);
+    }
+
+    /**
+     * Tells whether routes refer to files by a relative location and so have to be loaded from a workspace.
+     *
+     * @param code the YAML route definitions
+     * @return true if the routes use a relative {@code file:} or {@code resource:file:} location
+     */
+    static boolean needsWorkspace(String code) {
+        return code != null && RELATIVE_FILE_LOCATION.matcher(code).find();
     }
 
     private static Timestamp now() {
@@ -47,145 +186,595 @@ public class CodeExecutorService extends CodeExecutorGrpc.CodeExecutorImplBase {
                 request.getCode().length(),
                 request.getCode());
 
-        Path workspace = null;
-        WanakuCamelManager camelManager = null;
+        // Closing a session is cheap and must work even when the engine is saturated
+        final String sessionAction = request.getArgumentsMap().get(ARG_SESSION_ACTION);
+        if (SESSION_ACTION_CLOSE.equalsIgnoreCase(sessionAction)) {
+            closeSession(request.getArgumentsMap().get(ARG_SESSION_ID), responseObserver);
+            return;
+        }
+
+        // Shed the execution right away rather than letting it slow down the ones already running
+        final CompletableFuture<AdaptiveConcurrencyLimiter.Permit> admission = concurrencyLimiter.acquire();
+        if (admission == null) {
+            LOG.warn(
+                    "Rejecting code execution request for URI {}: {}", request.getUri(), concurrencyLimiter.getStats());
+            responseObserver.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Too many concurrent executions, retry later")
+                    .asRuntimeException());
+            return;
+        }
+
+        // Batch results are sent per item and deployments only reply with the session id, neither is chunked
+        final int chunkSize =
+                OUTPUT_MODE_CHUNKED.equalsIgnoreCase(request.getArgumentsMap().get(ARG_OUTPUT_MODE))
+                                && !request.getArgumentsMap().containsKey(ARG_BODIES)
+                                && !SESSION_ACTION_DEPLOY.equalsIgnoreCase(sessionAction)
+                        ? replyChunkSize
+                        : 0;
+        final Execution execution = new Execution(request, responseObserver, admission, chunkSize, sessionAction);
+
+        // Abort the execution as soon as the client goes away. The handler must be set before this method
+        // returns, and it also keeps late replies to a cancelled call from failing
+        if (responseObserver instanceof ServerCallStreamObserver<CodeExecutionReply> serverObserver) {
+            serverObserver.setOnCancelHandler(() -> abort(execution, AbortReason.CANCELLED));
+            serverObserver.setOnReadyHandler(() -> {
+                ChunkedReplyWriter writer = execution.writer;
+                if (writer != null) {
+                    writer.signal();
+                }
+            });
+        }
+
+        final Deadline deadline = Context.current().getDeadline();
+        final long timeLimitNanos = watchdog.timeLimitNanos(
+                deadline == null ? -1 : Math.max(0, deadline.timeRemaining(TimeUnit.NANOSECONDS)));
+        execution.timeLimitNanos = timeLimitNanos;
+        execution.watch = watchdog.watch(timeLimitNanos, () -> abort(execution, AbortReason.TIMEOUT));
+
+        // The transport thread only schedules the pipeline: preparing the context, invoking the routes and
+        // the cleanup all run on the execution executor or on the producer template threads
+        execution.result.whenCompleteAsync((reply, error) -> complete(execution, reply, error), executionExecutor);
+        admission
+                .thenAcceptAsync(permit -> prepare(execution, permit), executionExecutor)
+                .thenCompose(unused -> invoke(execution))
+                .whenComplete((reply, error) -> {
+                    if (error != null) {
+                        execution.result.completeExceptionally(error);
+                    } else {
+                        execution.result.complete(reply);
+                    }
+                });
+    }
+
+    private void abort(Execution execution, AbortReason reason) {
+        final ChunkedReplyWriter writer = execution.writer;
+        if ((execution.result.isDone() && writer == null) || !execution.abortReason.compareAndSet(null, reason)) {
+            return;
+        }
+
+        LOG.warn("Aborting code execution for URI {}: {}", execution.request.getUri(), reason.description);
+
+        // The reply is being streamed, stopping the writer completes the execution
+        if (writer != null) {
+            writer.cancel(new CancellationException(reason.description));
+            return;
+        }
+
+        // Leave the admission queue if still waiting there, then complete the execution without waiting for
+        // the pipeline: the cleanup tears down whatever the pipeline already set up
+        execution.admission.cancel(false);
+        execution.result.completeExceptionally(new CancellationException(reason.description));
+    }
+
+    private void prepare(Execution execution, AdaptiveConcurrencyLimiter.Permit permit) {
+        final CodeExecutionRequest request = execution.request;
+
+        if (!execution.attachPermit(permit)) {
+            permit.releaseWithoutSample();
+            throw new CancellationException(AbortReason.CANCELLED.description);
+        }
 
         try {
-            responseObserver.onNext(CodeExecutionReply.newBuilder()
-                    .addContent("Creating workspace")
-                    .setOutputType(OutputType.OUTPUT_TYPE_STATUS)
-                    .setStatus(ExecutionStatus.EXECUTION_STATUS_PENDING)
-                    .setTimestamp(now())
-                    .build());
+            final boolean invokeSession = SESSION_ACTION_INVOKE.equalsIgnoreCase(execution.sessionAction);
+            final boolean deploySession = SESSION_ACTION_DEPLOY.equalsIgnoreCase(execution.sessionAction);
 
-            // 0. Validate request has code
             final String code = request.getCode();
-            if (code == null || code.trim().isEmpty()) {
-                throw new IllegalArgumentException("Request code is empty or null");
+            final boolean inMemory = routesInMemory && !needsWorkspace(code);
+
+            // The client hears back before anything is validated, only the wording depends on the path taken
+            final String initialStatus;
+            if (invokeSession) {
+                initialStatus = "Looking up execution session";
+            } else if (inMemory) {
+                initialStatus = "Routes received, loading them from memory";
+            } else {
+                initialStatus = "Creating workspace";
             }
+            execution.send(statusReply(initialStatus, ExecutionStatus.EXECUTION_STATUS_PENDING));
 
-            // 1. Create temp workspace
-            if (!Files.exists(dataDir)) {
-                Files.createDirectories(dataDir);
-                LOG.info("Created data directory: {}", dataDir);
+            if (execution.sessionAction != null && !invokeSession && !deploySession) {
+                throw new IllegalArgumentException("Unknown session action: " + execution.sessionAction);
+            }
+            if (deploySession && !sessionManager.isEnabled()) {
+                throw new IllegalStateException("Execution sessions are disabled on this engine");
             }
-            workspace = Files.createTempDirectory(dataDir, "cee-exec-");
-            LOG.info("Created workspace at: {}", workspace);
 
-            // 2. Write routes to file
-            Path routesPath = workspace.resolve("routes.yaml");
-            Files.writeString(routesPath, code);
-            long fileSize = Files.size(routesPath);
-            LOG.info("Wrote routes to: {} ({} bytes)", routesPath, fileSize);
+            // 0. Validate request has code, sessions already have their routes
+            if (!invokeSession && (code == null || code.trim().isEmpty())) {
+                throw new IllegalArgumentException("Request code is empty or null");
+            }
 
-            if (fileSize == 0) {
-                throw new IllegalStateException("Routes file is empty after write");
+            // Batch bodies are parsed upfront so that a malformed batch does not cost a context
+            final String bodies = request.getArgumentsMap().get(ARG_BODIES);
+            if (bodies != null) {
+                execution.batchBodies = BatchRunner.parseBodies(bodies);
+                execution.batchParallelism =
+                        batchParallelism(request.getArgumentsMap().get(ARG_PARALLELISM));
+                LOG.info(
+                        "Batch of {} bodies with a parallelism of {}",
+                        execution.batchBodies.size(),
+                        execution.batchParallelism);
             }
 
-            responseObserver.onNext(CodeExecutionReply.newBuilder()
-                    .addContent("Routes written to workspace")
-                    .setOutputType(OutputType.OUTPUT_TYPE_STATUS)
-                    .setStatus(ExecutionStatus.EXECUTION_STATUS_PENDING)
-                    .setTimestamp(now())
-                    .build());
+            if (invokeSession) {
+                final String sessionId = request.getArgumentsMap().get(ARG_SESSION_ID);
+                WanakuCamelManager camelManager = sessionManager.acquire(sessionId);
+                if (!execution.attachSession(sessionId, camelManager)) {
+                    sessionManager.release(sessionId, false);
+                    throw new CancellationException(execution.abortDescription());
+                }
+                execution.routesLoaded = true;
+                execution.send(statusReply(
+                        "Using routes of execution session " + sessionId, ExecutionStatus.EXECUTION_STATUS_RUNNING));
+                return;
+            }
 
-            // 3. Extract dependencies from arguments map
+            // 1. Extract dependencies from arguments map
             String dependenciesList = request.getArgumentsMap().get("dependencies");
             LOG.info("Dependencies: {}", dependenciesList);
 
-            // 4. Extract repositories or use default
+            // 2. Extract repositories or use default
             String repositoriesList = request.getArgumentsMap().getOrDefault("repositories", defaultRepositories);
             LOG.info("Repositories: {}", repositoriesList);
 
-            // 5. Create WanakuCamelManager and load routes
+            // 3. Look for a context that already has these routes loaded
+            execution.routeKey = RouteCache.key(code, dependenciesList);
+            WanakuCamelManager cached = routeCache.acquire(execution.routeKey);
+
+            if (cached != null) {
+                attachManager(execution, cached);
+                execution.routesLoaded = true;
+                LOG.info("Reusing cached Camel context for route set {}", execution.routeKey);
+                execution.send(statusReply("Reusing cached routes", ExecutionStatus.EXECUTION_STATUS_PENDING));
+            } else if (!inMemory) {
+                // 4. Create temp workspace
+                if (!Files.exists(dataDir)) {
+                    Files.createDirectories(dataDir);
+                    LOG.info("Created data directory: {}", dataDir);
+                }
+                Path workspace = Files.createTempDirectory(dataDir, "cee-exec-");
+                if (!execution.attachWorkspace(workspace)) {
+                    deleteDirectory(workspace);
+                    throw new CancellationException(execution.abortDescription());
+                }
+                LOG.info("Created workspace at: {}", workspace);
+
+                // 5. Write routes to file
+                Path routesPath = workspace.resolve("routes.yaml");
+                Files.writeString(routesPath, code);
+                long fileSize = Files.size(routesPath);
+                LOG.info("Wrote routes to: {} ({} bytes)", routesPath, fileSize);
+
+                if (fileSize == 0) {
+                    throw new IllegalStateException("Routes file is empty after write");
+                }
+
+                execution.send(statusReply("Routes written to workspace", ExecutionStatus.EXECUTION_STATUS_PENDING));
+            }
+
+            if (!execution.routesLoaded) {
+                // 6. Acquire a CamelContext and load routes
+                execution.send(statusReply(
+                        "Initializing Camel context and loading routes", ExecutionStatus.EXECUTION_STATUS_RUNNING));
+
+                LOG.info("Starting Camel Context");
+                WanakuCamelManager camelManager = contextPool.acquire(dependenciesList, repositoriesList);
+                attachManager(execution, camelManager);
+                if (execution.workspace != null) {
+                    camelManager.loadRoutes(execution.workspace.resolve("routes.yaml"));
+                } else {
+                    camelManager.loadRoutesFromString(code);
+                }
+                LOG.info("CamelContext started with routes");
+
+                execution.send(statusReply(
+                        "Camel routes loaded and context started", ExecutionStatus.EXECUTION_STATUS_RUNNING));
+                execution.routesLoaded = true;
+            }
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void attachManager(Execution execution, WanakuCamelManager camelManager) {
+        if (!execution.attachManager(camelManager)) {
+            // The execution was aborted while this context was being set up
+            camelManager.abort();
+            throw new CancellationException(execution.abortDescription());
+        }
+    }
+
+    private CompletableFuture<Object> invoke(Execution execution) {
+        if (SESSION_ACTION_DEPLOY.equalsIgnoreCase(execution.sessionAction)) {
+            return CompletableFuture.completedFuture(openSession(execution));
+        }
+
+        // 7. Stream execution status - the routes are already running in the CamelContext
+        execution.send(statusReply("Routes are now executing", ExecutionStatus.EXECUTION_STATUS_RUNNING));
+
+        execution.invoked = true;
+        final CamelContext camelContext = execution.camelManager.getCamelContext();
+        final ProducerTemplate producerTemplate = camelContext.createProducerTemplate();
+        if (!execution.attachProducerTemplate(producerTemplate)) {
+            closeQuietly(producerTemplate);
+            throw new CancellationException(execution.abortDescription());
+        }
+
+        if (execution.batchBodies != null) {
+            return new BatchRunner(
+                            producerTemplate,
+                            execution.batchBodies,
+                            execution.batchParallelism,
+                            (index, reply, error) -> execution.send(batchItemReply(index, reply, error)),
+                            execution.result::isDone)
+                    .run()
+                    .thenApply(result -> result);
+        }
+
+        final String body = (execution.request.getBody() == null
+                        || execution.request.getBody().isEmpty())
+                ? ""
+                : execution.request.getBody();
+        if (execution.chunkSize > 0) {
+            // Keep the body as the route produced it, it is converted while being streamed
+            return producerTemplate.asyncRequestBody("direct:start", body);
+        }
+        return producerTemplate
+                .asyncRequestBody("direct:start", body, String.class)
+                .thenApply(reply -> reply);
+    }
+
+    private DeployedSession openSession(Execution execution) {
+        synchronized (execution) {
+            if (execution.cleanedUp || execution.abortReason.get() != null) {
+                throw new CancellationException(execution.abortDescription());
+            }
+
+            // From now on the session owns the context, the cleanup leaves it alone
+            String sessionId = sessionManager.open(execution.camelManager);
+            execution.camelManager = null;
+            LOG.info("Deployed routes for URI {} as execution session {}", execution.request.getUri(), sessionId);
+            return new DeployedSession(sessionId);
+        }
+    }
+
+    private void closeSession(String sessionId, StreamObserver<CodeExecutionReply> responseObserver) {
+        final boolean closed = sessionManager.close(sessionId);
+        if (closed) {
             responseObserver.onNext(CodeExecutionReply.newBuilder()
-                    .addContent("Initializing Camel context and loading routes")
-                    .setOutputType(OutputType.OUTPUT_TYPE_STATUS)
-                    .setStatus(ExecutionStatus.EXECUTION_STATUS_RUNNING)
+                    .addContent("Execution session closed")
+                    .setOutputType(OutputType.OUTPUT_TYPE_COMPLETION)
+                    .setStatus(ExecutionStatus.EXECUTION_STATUS_COMPLETED)
+                    .setExitCode(0)
                     .setTimestamp(now())
                     .build());
-
-            LOG.info("Starting Camel Context");
-            camelManager = new WanakuCamelManager(routesPath, dependenciesList, repositoriesList);
-            LOG.info("CamelContext started with routes");
-
+        } else {
             responseObserver.onNext(CodeExecutionReply.newBuilder()
-                    .addContent("Camel routes loaded and context started")
-                    .setOutputType(OutputType.OUTPUT_TYPE_STATUS)
-                    .setStatus(ExecutionStatus.EXECUTION_STATUS_RUNNING)
+                    .addContent("Execution failed: Unknown or expired execution session: " + sessionId)
+                    .setOutputType(OutputType.OUTPUT_TYPE_STDERR)
+                    .setStatus(ExecutionStatus.EXECUTION_STATUS_FAILED)
+                    .setExitCode(1)
                     .setTimestamp(now())
                     .build());
+        }
+        responseObserver.onCompleted();
+    }
 
-            // 6. Stream execution status - the routes are already running in the CamelContext
-            responseObserver.onNext(CodeExecutionReply.newBuilder()
-                    .addContent("Routes are now executing")
-                    .setOutputType(OutputType.OUTPUT_TYPE_STATUS)
+    private int batchParallelism(String parallelism) {
+        if (parallelism == null || parallelism.isBlank()) {
+            return 1;
+        }
+
+        final int value;
+        try {
+            value = Integer.parseInt(parallelism.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid batch parallelism: " + parallelism);
+        }
+        if (value < 1) {
+            throw new IllegalArgumentException("Batch parallelism must be at least 1: " + parallelism);
+        }
+        return Math.min(value, Math.max(1, batchMaxParallelism));
+    }
+
+    private static CodeExecutionReply batchItemReply(int index, String reply, Throwable error) {
+        if (error != null) {
+            LOG.debug("Batch item {} failed: {}", index, error.getMessage());
+            return CodeExecutionReply.newBuilder()
+                    .addContent(String.valueOf(index))
+                    .addContent(String.format("Unable to invoke tool: %s", error.getMessage()))
+                    .setOutputType(OutputType.OUTPUT_TYPE_STDERR)
                     .setStatus(ExecutionStatus.EXECUTION_STATUS_RUNNING)
                     .setTimestamp(now())
-                    .build());
+                    .build();
+        }
 
-            final CamelContext camelContext = camelManager.getCamelContext();
-            try (ProducerTemplate producerTemplate = camelContext.createProducerTemplate()) {
+        return CodeExecutionReply.newBuilder()
+                .addContent(String.valueOf(index))
+                .addContent(reply == null ? "" : reply)
+                .setOutputType(OutputType.OUTPUT_TYPE_STDOUT)
+                .setStatus(ExecutionStatus.EXECUTION_STATUS_RUNNING)
+                .setTimestamp(now())
+                .build();
+    }
 
-                final String body =
-                        (request.getBody() == null || request.getBody().isEmpty()) ? "" : request.getBody();
-                final String reply = producerTemplate.requestBody("direct:start", body, String.class);
+    private void complete(Execution execution, Object reply, Throwable error) {
+        synchronized (execution) {
+            // No more progress replies from the pipeline past this point
+            execution.closed = true;
+        }
 
+        if (error == null && execution.chunkSize > 0) {
+            try {
+                streamReply(execution, reply);
+                return;
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+
+        finish(execution, reply, error);
+    }
+
+    private void streamReply(Execution execution, Object reply) throws Exception {
+        // Converting to a Reader keeps stream bodies as streams, they are only read chunk by chunk
+        final Reader reader = reply == null
+                ? Reader.nullReader()
+                : execution.camelManager.getCamelContext().getTypeConverter().mandatoryConvertTo(Reader.class, reply);
+
+        final ChunkedReplyWriter writer = new ChunkedReplyWriter(
+                reader,
+                execution.chunkSize,
+                execution.responseObserver,
+                execution,
+                executionExecutor,
+                e -> finish(execution, null, e));
+        execution.writer = writer;
+
+        // The execution may have been aborted while the writer was being set up
+        if (execution.abortReason.get() != null) {
+            writer.cancel(new CancellationException(execution.abortDescription()));
+        } else {
+            writer.signal();
+        }
+    }
+
+    private void finish(Execution execution, Object reply, Throwable error) {
+        try {
+            // A client may close the session as soon as it gets the reply, so the session is idle by then
+            releaseSession(execution);
+            synchronized (execution) {
+                sendOutcome(execution, reply, error);
+            }
+        } finally {
+            cleanup(execution);
+        }
+    }
+
+    private void sendOutcome(Execution execution, Object reply, Throwable error) {
+        final StreamObserver<CodeExecutionReply> responseObserver = execution.responseObserver;
+
+        try {
+            // An abort racing with a regular completion loses, the reply is already there
+            final AbortReason abortReason = error != null ? execution.abortReason.get() : null;
+            if (abortReason == AbortReason.CANCELLED) {
+                LOG.info("Code execution cancelled by the client for URI: {}", execution.request.getUri());
+                return;
+            }
+
+            if (abortReason == AbortReason.TIMEOUT) {
                 responseObserver.onNext(CodeExecutionReply.newBuilder()
-                        .setOutputType(OutputType.OUTPUT_TYPE_STDOUT)
+                        .addContent(String.format(
+                                "Execution timed out after %d ms",
+                                TimeUnit.NANOSECONDS.toMillis(execution.timeLimitNanos)))
+                        .setOutputType(OutputType.OUTPUT_TYPE_STDERR)
+                        .setStatus(ExecutionStatus.EXECUTION_STATUS_FAILED)
+                        .setExitCode(EXIT_CODE_TIMEOUT)
+                        .setTimestamp(now())
+                        .build());
+                responseObserver.onCompleted();
+                return;
+            }
+
+            if (error != null) {
+                throw error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            }
+
+            if (reply instanceof BatchRunner.Result batchResult) {
+                responseObserver.onNext(CodeExecutionReply.newBuilder()
+                        .addContent(String.format(
+                                "Batch completed: %d succeeded, %d failed",
+                                batchResult.succeeded(), batchResult.failed()))
+                        .setOutputType(OutputType.OUTPUT_TYPE_COMPLETION)
                         .setStatus(ExecutionStatus.EXECUTION_STATUS_COMPLETED)
-                        .addContent(reply.toString())
+                        .setExitCode(batchResult.failed() == 0 ? 0 : 2)
+                        .setTimestamp(now())
                         .build());
+                responseObserver.onCompleted();
+                execution.succeeded = true;
+                LOG.info("Batch execution completed for URI: {}", execution.request.getUri());
+                return;
+            }
 
-                // 8. Send completion status
+            if (reply instanceof DeployedSession deployedSession) {
+                responseObserver.onNext(CodeExecutionReply.newBuilder()
+                        .setOutputType(OutputType.OUTPUT_TYPE_STDOUT)
+                        .setStatus(ExecutionStatus.EXECUTION_STATUS_COMPLETED)
+                        .addContent(deployedSession.sessionId())
+                        .build());
                 responseObserver.onNext(CodeExecutionReply.newBuilder()
-                        .addContent("Execution completed successfully")
+                        .addContent("Execution session deployed")
                         .setOutputType(OutputType.OUTPUT_TYPE_COMPLETION)
                         .setStatus(ExecutionStatus.EXECUTION_STATUS_COMPLETED)
                         .setExitCode(0)
                         .setTimestamp(now())
                         .build());
-
-                responseObserver.onCompleted();
-                LOG.info("Code execution completed for URI: {}", request.getUri());
-            } catch (Exception e) {
-                reportRouteFailure(responseObserver, e, "direct:start");
                 responseObserver.onCompleted();
+                execution.succeeded = true;
+                return;
             }
 
-        } catch (Exception e) {
-            LOG.error("Error during code execution", e);
+            // A chunked reply was already streamed by the writer
+            if (execution.writer == null) {
+                responseObserver.onNext(CodeExecutionReply.newBuilder()
+                        .setOutputType(OutputType.OUTPUT_TYPE_STDOUT)
+                        .setStatus(ExecutionStatus.EXECUTION_STATUS_COMPLETED)
+                        .addContent(reply.toString())
+                        .build());
+            }
+
+            // 8. Send completion status
             responseObserver.onNext(CodeExecutionReply.newBuilder()
-                    .addContent("Execution failed: " + e.getMessage())
-                    .setOutputType(OutputType.OUTPUT_TYPE_STDERR)
-                    .setStatus(ExecutionStatus.EXECUTION_STATUS_FAILED)
-                    .setExitCode(1)
+                    .addContent("Execution completed successfully")
+                    .setOutputType(OutputType.OUTPUT_TYPE_COMPLETION)
+                    .setStatus(ExecutionStatus.EXECUTION_STATUS_COMPLETED)
+                    .setExitCode(0)
                     .setTimestamp(now())
                     .build());
+
             responseObserver.onCompleted();
-        } finally {
-            // 9. Cleanup: stop CamelContext
+            execution.succeeded = true;
+            LOG.info("Code execution completed for URI: {}", execution.request.getUri());
+        } catch (Throwable e) {
+            if (execution.invoked) {
+                reportRouteFailure(responseObserver, e, "direct:start");
+            } else {
+                LOG.error("Error during code execution", e);
+                responseObserver.onNext(CodeExecutionReply.newBuilder()
+                        .addContent("Execution failed: " + e.getMessage())
+                        .setOutputType(OutputType.OUTPUT_TYPE_STDERR)
+                        .setStatus(ExecutionStatus.EXECUTION_STATUS_FAILED)
+                        .setExitCode(1)
+                        .setTimestamp(now())
+                        .build());
+            }
+            responseObserver.onCompleted();
+        }
+    }
+
+    private void cleanup(Execution execution) {
+        if (execution.watch != null) {
+            execution.watch.cancel(false);
+        }
+
+        final ProducerTemplate producerTemplate;
+        final WanakuCamelManager camelManager;
+        final Path workspace;
+        final AdaptiveConcurrencyLimiter.Permit permit;
+        final String sessionId;
+        synchronized (execution) {
+            // Resources the pipeline sets up from now on are released by the pipeline itself
+            execution.cleanedUp = true;
+            producerTemplate = execution.producerTemplate;
+            execution.producerTemplate = null;
+            camelManager = execution.camelManager;
+            workspace = execution.workspace;
+            permit = execution.permit;
+            sessionId = execution.sessionId;
+        }
+
+        if (producerTemplate != null) {
+            closeQuietly(producerTemplate);
+        }
+
+        // 9. Cleanup: keep the loaded routes for the next identical submission, or return the
+        // CamelContext to the pool (or stop it). Aborted executions may still have exchanges in flight,
+        // so their context is torn down right away instead. Session contexts go back to their session,
+        // which is discarded as well when the invocation was aborted
+        if (sessionId != null) {
+            releaseSession(execution);
+        } else if (execution.abortReason.get() != null) {
             if (camelManager != null) {
                 try {
-                    LOG.info("Stopping Camel context");
-                    camelManager.stop();
+                    camelManager.abort();
                 } catch (Exception e) {
-                    LOG.error("Error stopping Camel context", e);
+                    LOG.error("Error aborting Camel context", e);
                 }
             }
+        } else if (execution.routesLoaded) {
+            routeCache.release(execution.routeKey, camelManager);
+        } else {
+            contextPool.release(camelManager);
+        }
 
-            // 10. Cleanup workspace
-            if (workspace != null) {
-                try {
-                    deleteDirectory(workspace);
-                    LOG.info("Cleaned up workspace: {}", workspace);
-                } catch (IOException e) {
-                    LOG.warn("Failed to cleanup workspace: {}", e.getMessage());
-                }
+        // 10. Cleanup workspace
+        if (workspace != null) {
+            try {
+                deleteDirectory(workspace);
+                LOG.info("Cleaned up workspace: {}", workspace);
+            } catch (IOException e) {
+                LOG.warn("Failed to cleanup workspace: {}", e.getMessage());
+            }
+        }
+
+        // 11. Let the next execution in
+        if (permit != null) {
+            if (execution.succeeded) {
+                permit.release();
+            } else {
+                permit.releaseWithoutSample();
             }
         }
     }
 
+    private void releaseSession(Execution execution) {
+        final String sessionId;
+        final ProducerTemplate producerTemplate;
+        synchronized (execution) {
+            if (execution.sessionId == null || execution.sessionReleased) {
+                return;
+            }
+            execution.sessionReleased = true;
+            sessionId = execution.sessionId;
+            producerTemplate = execution.producerTemplate;
+            execution.producerTemplate = null;
+        }
+
+        if (producerTemplate != null) {
+            closeQuietly(producerTemplate);
+        }
+        sessionManager.release(sessionId, execution.abortReason.get() != null);
+    }
+
+    private static void closeQuietly(ProducerTemplate producerTemplate) {
+        try {
+            producerTemplate.close();
+        } catch (Exception e) {
+            LOG.warn("Failed to close producer template: {}", e.getMessage());
+        }
+    }
+
+    private static CodeExecutionReply statusReply(String content, ExecutionStatus status) {
+        return CodeExecutionReply.newBuilder()
+                .addContent(content)
+                .setOutputType(OutputType.OUTPUT_TYPE_STATUS)
+                .setStatus(status)
+                .setTimestamp(now())
+                .build();
+    }
+
     private void deleteDirectory(Path directory) throws IOException {
         if (Files.exists(directory)) {
             Files.walk(directory)
@@ -201,7 +790,7 @@ public class CodeExecutorService extends CodeExecutorGrpc.CodeExecutorImplBase {
     }
 
     private static void reportRouteFailure(
-            StreamObserver<CodeExecutionReply> responseObserver, Exception e, String routeId) {
+            StreamObserver<CodeExecutionReply> responseObserver, Throwable e, String routeId) {
 
         if (LOG.isDebugEnabled()) {
             LOG.error("Camel route {} could not be invoked: {}", routeId, e.getMessage(), e);
@@ -217,4 +806,121 @@ public class CodeExecutorService extends CodeExecutorGrpc.CodeExecutorImplBase {
                 .setStatus(ExecutionStatus.EXECUTION_STATUS_FAILED)
                 .build());
     }
+
+    /**
+     * Reply of a deploy session action.
+     *
+     * @param sessionId the id of the new session
+     */
+    private record DeployedSession(String sessionId) {}
+
+    private enum AbortReason {
+        TIMEOUT("execution timed out"),
+        CANCELLED("execution cancelled by the client");
+
+        private final String description;
+
+        AbortReason(String description) {
+            this.description = description;
+        }
+    }
+
+    /**
+     * State of a single execution, handed from one pipeline stage to the next.
+     *
+     * <p>An execution can be aborted while its pipeline is still running. Resources the pipeline sets up are
+     * therefore attached under the execution lock, so that they are either released by the cleanup or, when
+     * the cleanup already ran, by the pipeline stage that created them.
+     */
+    private static final class Execution {
+        private final CodeExecutionRequest request;
+        private final StreamObserver<CodeExecutionReply> responseObserver;
+        private final CompletableFuture<AdaptiveConcurrencyLimiter.Permit> admission;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private final AtomicReference<AbortReason> abortReason = new AtomicReference<>();
+        private final int chunkSize;
+        private final String sessionAction;
+        private volatile ChunkedReplyWriter writer;
+        private List<String> batchBodies;
+        private int batchParallelism;
+        private long timeLimitNanos;
+        private ScheduledFuture<?> watch;
+        private Path workspace;
+        private volatile WanakuCamelManager camelManager;
+        private ProducerTemplate producerTemplate;
+        private AdaptiveConcurrencyLimiter.Permit permit;
+        private String routeKey;
+        private String sessionId;
+        private volatile boolean routesLoaded;
+        private volatile boolean invoked;
+        private volatile boolean succeeded;
+        private boolean closed;
+        private boolean cleanedUp;
+        private boolean sessionReleased;
+
+        private Execution(
+                CodeExecutionRequest request,
+                StreamObserver<CodeExecutionReply> responseObserver,
+                CompletableFuture<AdaptiveConcurrencyLimiter.Permit> admission,
+                int chunkSize,
+                String sessionAction) {
+            this.request = request;
+            this.responseObserver = responseObserver;
+            this.admission = admission;
+            this.chunkSize = chunkSize;
+            this.sessionAction = sessionAction;
+        }
+
+        private synchronized void send(CodeExecutionReply reply) {
+            if (!closed) {
+                responseObserver.onNext(reply);
+            }
+        }
+
+        private synchronized boolean attachPermit(AdaptiveConcurrencyLimiter.Permit permit) {
+            if (cleanedUp) {
+                return false;
+            }
+            this.permit = permit;
+            return true;
+        }
+
+        private synchronized boolean attachWorkspace(Path workspace) {
+            if (cleanedUp) {
+                return false;
+            }
+            this.workspace = workspace;
+            return true;
+        }
+
+        private synchronized boolean attachManager(WanakuCamelManager camelManager) {
+            if (cleanedUp) {
+                return false;
+            }
+            this.camelManager = camelManager;
+            return true;
+        }
+
+        private synchronized boolean attachSession(String sessionId, WanakuCamelManager camelManager) {
+            if (cleanedUp) {
+                return false;
+            }
+            this.sessionId = sessionId;
+            this.camelManager = camelManager;
+            return true;
+        }
+
+        private synchronized boolean attachProducerTemplate(ProducerTemplate producerTemplate) {
+            if (cleanedUp) {
+                return false;
+            }
+            this.producerTemplate = producerTemplate;
+            return true;
+        }
+
+        private String abortDescription() {
+            AbortReason reason = abortReason.get();
+            return reason != null ? reason.description : "execution aborted";
+        }
+    }
 }
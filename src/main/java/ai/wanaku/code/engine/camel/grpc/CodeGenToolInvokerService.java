@@ -2,7 +2,7 @@ package ai.wanaku.code.engine.camel.grpc;
 
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import io.grpc.Status;
@@ -17,14 +17,83 @@ import ai.wanaku.core.exchange.v1.ToolInvokerGrpc;
  *
  * <p>This service handles tool invocation requests for codegen:// URIs and delegates
  * to the appropriate tool implementation via CodeGenToolService.
+ *
+ * <p>The replies of the tools that take no arguments are built once, from the precomputed results of
+ * CodeGenToolService, and served by matching the tool name in place, without parsing the URI, to
+ * requests without arguments.
+ *
+ * <p>The tool service is looked up on every call, so a package loaded again on a new registration is
+ * served at once; the prebuilt replies are rebuilt the first time a new tool service is seen.
  */
 public class CodeGenToolInvokerService extends ToolInvokerGrpc.ToolInvokerImplBase {
     private static final Logger LOG = LoggerFactory.getLogger(CodeGenToolInvokerService.class);
 
-    private final CodeGenToolService codeGenToolService;
+    private static final String SCHEME_SEPARATOR = "://";
+
+    private final Supplier<CodeGenToolService> codeGenToolServices;
+    private volatile Tools tools;
 
     public CodeGenToolInvokerService(CodeGenToolService codeGenToolService) {
-        this.codeGenToolService = codeGenToolService;
+        this(() -> codeGenToolService);
+    }
+
+    /**
+     * Creates a new CodeGenToolInvokerService following the tool service of the current package.
+     *
+     * @param codeGenToolServices supplies the tool service of the package currently loaded, or null if none
+     */
+    public CodeGenToolInvokerService(Supplier<CodeGenToolService> codeGenToolServices) {
+        this.codeGenToolServices = codeGenToolServices;
+    }
+
+    private Tools tools() {
+        final CodeGenToolService service = codeGenToolServices.get();
+        Tools current = tools;
+        if (current == null || current.service() != service) {
+            // Racing threads build the same replies, either of them may be kept
+            current = new Tools(service, service != null ? buildStaticReplies(service) : new StaticReply[0]);
+            tools = current;
+        }
+        return current;
+    }
+
+    private static StaticReply[] buildStaticReplies(CodeGenToolService service) {
+        return service.getStaticResults().entrySet().stream()
+                .map(e -> new StaticReply(
+                        e.getKey(),
+                        ToolInvokeReply.newBuilder().addContent(e.getValue()).build()))
+                .toArray(StaticReply[]::new);
+    }
+
+    /**
+     * Returns the prebuilt reply of a tool URI.
+     *
+     * @param uri the tool URI ({scheme}://{toolName})
+     * @return the reply, or null if the tool has no prebuilt reply
+     */
+    ToolInvokeReply staticReply(String uri) {
+        return staticReply(tools().staticReplies(), uri);
+    }
+
+    private static ToolInvokeReply staticReply(StaticReply[] staticReplies, String uri) {
+        final int separator = uri.indexOf(SCHEME_SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+
+        final int start = separator + SCHEME_SEPARATOR.length();
+        int end = start;
+        while (end < uri.length() && uri.charAt(end) != '/' && uri.charAt(end) != '?' && uri.charAt(end) != '#') {
+            end++;
+        }
+
+        for (StaticReply staticReply : staticReplies) {
+            String toolName = staticReply.toolName();
+            if (end - start == toolName.length() && uri.regionMatches(start, toolName, 0, toolName.length())) {
+                return staticReply.reply();
+            }
+        }
+        return null;
     }
 
     @Override
@@ -32,7 +101,9 @@ public class CodeGenToolInvokerService extends ToolInvokerGrpc.ToolInvokerImplBa
         final String uri = request.getUri();
         LOG.debug("Received tool invocation request for URI: {}", uri);
 
-        if (!codeGenToolService.isReady()) {
+        final Tools current = tools();
+        final CodeGenToolService codeGenToolService = current.service();
+        if (codeGenToolService == null || !codeGenToolService.isReady()) {
             LOG.warn("Code generation tool service is not ready");
             responseObserver.onError(Status.UNAVAILABLE
                     .withDescription("Code generation tool service is not ready")
@@ -40,9 +111,17 @@ public class CodeGenToolInvokerService extends ToolInvokerGrpc.ToolInvokerImplBa
             return;
         }
 
+        final ToolInvokeReply staticReply =
+                request.getArgumentsMap().isEmpty() ? staticReply(current.staticReplies(), uri) : null;
+        if (staticReply != null) {
+            responseObserver.onNext(staticReply);
+            responseObserver.onCompleted();
+            return;
+        }
+
         try {
-            Map<String, String> arguments = request.getArgumentsMap().entrySet().stream()
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            // Already an unmodifiable view, the tools only read it
+            Map<String, String> arguments = request.getArgumentsMap();
 
             CodeGenToolService.ToolResult result = codeGenToolService.invokeTool(uri, arguments);
 
@@ -64,4 +143,8 @@ public class CodeGenToolInvokerService extends ToolInvokerGrpc.ToolInvokerImplBa
                     .asRuntimeException());
         }
     }
+
+    private record StaticReply(String toolName, ToolInvokeReply reply) {}
+
+    private record Tools(CodeGenToolService service, StaticReply[] staticReplies) {}
 }
@@ -0,0 +1,94 @@
+package ai.wanaku.code.engine.camel.grpc;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Enforces execution time limits.
+ *
+ * <p>Each execution is watched with the tighter of the server side execution timeout and the deadline of
+ * the gRPC call. When the limit expires, the watchdog runs the abort action of the execution, which
+ * completes it on behalf of routes that never return and reclaims its resources, whether or not the
+ * threads running it react to interruption.
+ */
+public class ExecutionWatchdog implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ExecutionWatchdog.class);
+
+    private final Duration executionTimeout;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * Creates a new ExecutionWatchdog.
+     *
+     * @param executionTimeout the server side execution timeout (zero means no server side limit)
+     */
+    public ExecutionWatchdog(Duration executionTimeout) {
+        this.executionTimeout = executionTimeout;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cee-execution-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Computes the time an execution may take.
+     *
+     * @param remainingDeadlineNanos the time left before the gRPC call deadline, or a negative value if
+     *     the call has no deadline
+     * @return the time limit in nanoseconds, or a negative value if the execution is not limited
+     */
+    public long timeLimitNanos(long remainingDeadlineNanos) {
+        long limit = executionTimeout.isZero() || executionTimeout.isNegative() ? -1 : executionTimeout.toNanos();
+        if (remainingDeadlineNanos >= 0 && (limit < 0 || remainingDeadlineNanos < limit)) {
+            limit = remainingDeadlineNanos;
+        }
+        return limit;
+    }
+
+    /**
+     * Watches an execution.
+     *
+     * @param timeLimitNanos the time limit computed with {@link #timeLimitNanos(long)}
+     * @param onTimeout the action aborting the execution once the limit expires
+     * @return the handle to cancel once the execution is done, or null if the execution is not limited
+     */
+    public ScheduledFuture<?> watch(long timeLimitNanos, Runnable onTimeout) {
+        if (timeLimitNanos < 0) {
+            return null;
+        }
+
+        return scheduler.schedule(
+                () -> {
+                    timeouts.increment();
+                    try {
+                        onTimeout.run();
+                    } catch (Exception e) {
+                        LOG.error("Unable to abort timed out execution", e);
+                    }
+                },
+                timeLimitNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of executions aborted because they ran out of time.
+     *
+     * @return the timed out execution count
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
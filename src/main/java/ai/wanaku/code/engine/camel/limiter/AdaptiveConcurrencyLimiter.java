@@ -0,0 +1,239 @@
+package ai.wanaku.code.engine.camel.limiter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admission control for executions, with a concurrency limit that adapts to the observed latency.
+ *
+ * <p>The limit follows a gradient algorithm: a slowly moving average of the execution latency is used as
+ * the baseline, and whenever recent executions get slower than that baseline the limit shrinks in
+ * proportion. While latency stays at the baseline, the limit grows by a small headroom so that the
+ * engine keeps probing for more capacity. The limit always stays between the configured minimum and
+ * maximum.
+ *
+ * <p>Executions that cannot start right away wait in a bounded FIFO queue. Once the queue is full, new
+ * executions are rejected immediately so that the caller can shed them instead of slowing down everyone
+ * already admitted.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_WINDOW = 100;
+    private static final double SHORT_WINDOW = 5;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double BASELINE_TOLERANCE = 1.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueueSize;
+    private final Deque<CompletableFuture<Permit>> waiting = new ArrayDeque<>();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private double limit;
+    private double longRttNanos;
+    private double shortRttNanos;
+    private int inFlight;
+
+    /**
+     * Creates a new AdaptiveConcurrencyLimiter.
+     *
+     * @param initialLimit the concurrency limit to start with
+     * @param minLimit the lowest value the limit may shrink to
+     * @param maxLimit the highest value the limit may grow to (0 disables admission control)
+     * @param maxQueueSize the maximum number of executions waiting for a permit
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueueSize) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(0, maxLimit);
+        this.maxQueueSize = Math.max(0, maxQueueSize);
+        this.limit = Math.min(Math.max(initialLimit, this.minLimit), Math.max(this.maxLimit, this.minLimit));
+    }
+
+    /**
+     * Creates a limiter that admits every execution right away.
+     *
+     * @return a disabled limiter
+     */
+    public static AdaptiveConcurrencyLimiter unlimited() {
+        return new AdaptiveConcurrencyLimiter(1, 1, 0, 0);
+    }
+
+    /**
+     * Checks if this limiter bounds the number of concurrent executions.
+     *
+     * @return true if admission control is enabled
+     */
+    public boolean isEnabled() {
+        return maxLimit > 0;
+    }
+
+    /**
+     * Requests a permit to run an execution.
+     *
+     * @return a future completed with the permit once the execution may start, or null if the execution
+     *     is rejected because the wait queue is full
+     */
+    public CompletableFuture<Permit> acquire() {
+        if (!isEnabled()) {
+            return CompletableFuture.completedFuture(new Permit(System.nanoTime()));
+        }
+
+        synchronized (this) {
+            if (inFlight < (int) limit && waiting.isEmpty()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(new Permit(System.nanoTime()));
+            }
+
+            if (waiting.size() < maxQueueSize) {
+                CompletableFuture<Permit> future = new CompletableFuture<>();
+                waiting.addLast(future);
+                // A waiter giving up leaves the queue right away, so it does not count against its size
+                future.whenComplete((permit, error) -> {
+                    if (error != null) {
+                        leave(future);
+                    }
+                });
+                return future;
+            }
+        }
+
+        rejected.increment();
+        LOG.debug("Rejecting execution: {}", getStats());
+        return null;
+    }
+
+    private synchronized void leave(CompletableFuture<Permit> future) {
+        waiting.remove(future);
+    }
+
+    private void onRelease(long latencyNanos, boolean sample) {
+        synchronized (this) {
+            inFlight--;
+            if (sample) {
+                updateLimit(latencyNanos);
+            }
+        }
+        drain();
+    }
+
+    private void updateLimit(long latencyNanos) {
+        if (longRttNanos == 0) {
+            longRttNanos = latencyNanos;
+            shortRttNanos = latencyNanos;
+            return;
+        }
+
+        shortRttNanos += (latencyNanos - shortRttNanos) / SHORT_WINDOW;
+        longRttNanos += (shortRttNanos - longRttNanos) / LONG_WINDOW;
+
+        // Let the baseline recover quickly after a sustained slowdown, otherwise the limit stays low for
+        // a long time once the latency goes back to normal
+        if (longRttNanos > shortRttNanos * BASELINE_TOLERANCE) {
+            longRttNanos = shortRttNanos * BASELINE_TOLERANCE;
+        }
+
+        // Only grow when the limit is actually being used, so that a lightly loaded engine does not
+        // drift up to the maximum
+        if (inFlight + 1 < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, longRttNanos / shortRttNanos));
+        double headroom = Math.sqrt(limit);
+        double newLimit = limit * gradient + headroom;
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    private void drain() {
+        while (true) {
+            CompletableFuture<Permit> next;
+            synchronized (this) {
+                if (waiting.isEmpty() || inFlight >= (int) limit) {
+                    return;
+                }
+                next = waiting.pollFirst();
+                inFlight++;
+            }
+
+            // A waiter may have given up in the meantime, in which case the slot goes to the next one
+            if (!next.complete(new Permit(System.nanoTime()))) {
+                synchronized (this) {
+                    inFlight--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the current concurrency limit.
+     *
+     * @return the current limit
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Returns a snapshot of the limiter state.
+     *
+     * @return the current limiter statistics
+     */
+    public Stats getStats() {
+        synchronized (this) {
+            return new Stats((int) limit, inFlight, waiting.size(), rejected.sum());
+        }
+    }
+
+    /**
+     * Snapshot of the limiter state.
+     *
+     * @param limit the current concurrency limit
+     * @param inFlight the number of executions currently running
+     * @param queued the number of executions waiting for a permit
+     * @param rejected the number of executions rejected so far
+     */
+    public record Stats(int limit, int inFlight, int queued, long rejected) {}
+
+    /**
+     * Permission to run one execution. Must be released exactly once, when the execution finishes.
+     */
+    public final class Permit {
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Releases the permit, feeding the execution latency to the limit algorithm.
+         */
+        public void release() {
+            release(true);
+        }
+
+        /**
+         * Releases the permit without using the execution latency, for executions that failed or were
+         * cancelled and whose latency says nothing about the engine load.
+         */
+        public void releaseWithoutSample() {
+            release(false);
+        }
+
+        private void release(boolean sample) {
+            if (released.compareAndSet(false, true) && isEnabled()) {
+                onRelease(System.nanoTime() - startNanos, sample);
+            }
+        }
+    }
+}
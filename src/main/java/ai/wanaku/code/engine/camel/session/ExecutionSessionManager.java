@@ -0,0 +1,255 @@
+package ai.wanaku.code.engine.camel.session;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ai.wanaku.code.engine.camel.WanakuCamelManager;
+
+/**
+ * Keeps deployed route sets alive between executions.
+ *
+ * <p>A session owns a started context with its routes loaded. Clients deploy a route set once, get the
+ * session id back, and then invoke the routes of that session as often as needed without sending or
+ * loading them again. Sessions that are not used for longer than the idle timeout are closed in the
+ * background, and at most {@code maxSessions} sessions exist at any time.
+ */
+public class ExecutionSessionManager implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ExecutionSessionManager.class);
+
+    private final int maxSessions;
+    private final long idleTimeoutNanos;
+    private final Consumer<WanakuCamelManager> releaser;
+    private final Map<String, Session> sessions = new HashMap<>();
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * Creates a new ExecutionSessionManager.
+     *
+     * @param maxSessions the maximum number of open sessions (0 disables sessions)
+     * @param idleTimeout how long a session may stay unused before it is closed
+     * @param releaser receives the contexts of closed sessions
+     */
+    public ExecutionSessionManager(int maxSessions, Duration idleTimeout, Consumer<WanakuCamelManager> releaser) {
+        this.maxSessions = Math.max(0, maxSessions);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.releaser = releaser;
+
+        if (isEnabled() && idleTimeoutNanos > 0) {
+            long periodMillis = Math.max(1000, idleTimeout.toMillis() / 2);
+            this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "cee-session-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor.scheduleWithFixedDelay(this::evictIdle, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.evictor = null;
+        }
+    }
+
+    /**
+     * Creates a manager that refuses to open sessions.
+     *
+     * @return a disabled session manager
+     */
+    public static ExecutionSessionManager disabled() {
+        return new ExecutionSessionManager(0, Duration.ZERO, WanakuCamelManager::stop);
+    }
+
+    /**
+     * Checks if sessions can be opened.
+     *
+     * @return true if sessions are enabled
+     */
+    public boolean isEnabled() {
+        return maxSessions > 0;
+    }
+
+    /**
+     * Opens a session owning the given context.
+     *
+     * @param manager a started context with the session routes loaded
+     * @return the session id
+     * @throws IllegalStateException if sessions are disabled or the session limit is reached
+     */
+    public String open(WanakuCamelManager manager) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Execution sessions are disabled on this engine");
+        }
+
+        synchronized (sessions) {
+            if (sessions.size() >= maxSessions) {
+                throw new IllegalStateException(
+                        "Too many open execution sessions (" + maxSessions + "), close one before deploying again");
+            }
+
+            final String id = UUID.randomUUID().toString();
+            sessions.put(id, new Session(manager, System.nanoTime()));
+            LOG.info("Opened execution session {}", id);
+            return id;
+        }
+    }
+
+    /**
+     * Borrows the context of a session for an invocation. The session cannot expire until the context is
+     * given back with {@link #release(String, boolean)}.
+     *
+     * @param id the session id
+     * @return the context of the session
+     * @throws IllegalArgumentException if there is no open session with that id
+     */
+    public WanakuCamelManager acquire(String id) {
+        synchronized (sessions) {
+            Session session = id == null ? null : sessions.get(id);
+            if (session == null || session.closed) {
+                throw new IllegalArgumentException("Unknown or expired execution session: " + id);
+            }
+
+            session.inUse++;
+            return session.manager;
+        }
+    }
+
+    /**
+     * Gives back the context borrowed with {@link #acquire(String)}.
+     *
+     * @param id the session id
+     * @param discard true to close the session and abort its context, for instance because the invocation
+     *     was aborted and the context may still be busy; other invocations of the session run to completion
+     *     first, as on {@link #close(String)}
+     */
+    public void release(String id, boolean discard) {
+        final Session session;
+        synchronized (sessions) {
+            session = sessions.get(id);
+            if (session == null) {
+                return;
+            }
+
+            session.inUse--;
+            session.lastUsed = System.nanoTime();
+            if (discard) {
+                session.closed = true;
+                session.aborted = true;
+            }
+            if (!session.closed || session.inUse > 0) {
+                if (discard) {
+                    LOG.info("Discarding execution session {} once its other invocations complete", id);
+                }
+                return;
+            }
+            sessions.remove(id);
+        }
+
+        if (session.aborted) {
+            LOG.info("Discarding execution session {}", id);
+            abortQuietly(session.manager);
+        } else {
+            releaser.accept(session.manager);
+        }
+    }
+
+    /**
+     * Closes a session, releasing its context.
+     *
+     * @param id the session id
+     * @return true if the session existed
+     */
+    public boolean close(String id) {
+        final Session session;
+        synchronized (sessions) {
+            session = id == null ? null : sessions.get(id);
+            if (session == null || session.closed) {
+                return false;
+            }
+
+            // Invocations still running keep the context until the last of them gives it back
+            session.closed = true;
+            if (session.inUse > 0) {
+                LOG.info("Closing execution session {} once its invocations complete", id);
+                return true;
+            }
+            sessions.remove(id);
+        }
+
+        LOG.info("Closed execution session {}", id);
+        releaser.accept(session.manager);
+        return true;
+    }
+
+    /**
+     * Returns the number of open sessions.
+     *
+     * @return the open session count
+     */
+    public int size() {
+        synchronized (sessions) {
+            return sessions.size();
+        }
+    }
+
+    private void evictIdle() {
+        final long now = System.nanoTime();
+        List<String> expired = new ArrayList<>();
+
+        synchronized (sessions) {
+            sessions.forEach((id, session) -> {
+                if (session.inUse == 0 && !session.closed && now - session.lastUsed > idleTimeoutNanos) {
+                    expired.add(id);
+                }
+            });
+        }
+
+        expired.forEach(id -> {
+            LOG.info("Execution session {} expired", id);
+            close(id);
+        });
+    }
+
+    private static void abortQuietly(WanakuCamelManager manager) {
+        try {
+            manager.abort();
+        } catch (Exception e) {
+            LOG.error("Error aborting Camel context", e);
+        }
+    }
+
+    /**
+     * Stops the evictor and closes every session. Sessions still in use are released by their last
+     * invocation.
+     */
+    @Override
+    public void close() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+
+        List<String> ids;
+        synchronized (sessions) {
+            ids = new ArrayList<>(sessions.keySet());
+        }
+        ids.forEach(this::close);
+    }
+
+    private static final class Session {
+        private final WanakuCamelManager manager;
+        private long lastUsed;
+        private int inUse;
+        private boolean closed;
+        private boolean aborted;
+
+        private Session(WanakuCamelManager manager, long lastUsed) {
+            this.manager = manager;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
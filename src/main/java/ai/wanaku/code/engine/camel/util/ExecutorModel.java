@@ -0,0 +1,45 @@
+package ai.wanaku.code.engine.camel.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threading model used to run gRPC calls and the shared route thread pools.
+ *
+ * <p>Execution pipelines always run on platform threads: starting a Camel context and loading routes
+ * block inside synchronized blocks, and a virtual thread blocked there pins its carrier until JDK 24.
+ * With enough concurrent executions every carrier gets pinned and the pipelines deadlock.
+ */
+public enum ExecutorModel {
+    /**
+     * Unbounded cached pool of daemon platform threads. Every blocked task pins an OS thread.
+     */
+    PLATFORM,
+
+    /**
+     * One virtual thread per task. Blocked tasks unmount from their carrier thread, so thread
+     * count stays flat under bursts.
+     */
+    VIRTUAL;
+
+    /**
+     * Creates a new executor following this model.
+     *
+     * @param namePrefix the prefix of the thread names
+     * @return a new executor service
+     */
+    public ExecutorService newExecutor(String namePrefix) {
+        if (this == VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name(namePrefix, 1).factory());
+        }
+
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, namePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
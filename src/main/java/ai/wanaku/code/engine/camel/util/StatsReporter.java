@@ -0,0 +1,81 @@
+package ai.wanaku.code.engine.camel.util;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically logs the statistics exposed by the engine components (caches, pools, ...).
+ *
+ * <p>Components register a supplier returning a snapshot of their counters. When the reporting
+ * interval is zero, the reporter is disabled and registered suppliers are never invoked.
+ */
+public final class StatsReporter implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(StatsReporter.class);
+
+    private final Duration interval;
+    private final Map<String, Supplier<?>> sources = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a new StatsReporter.
+     *
+     * @param interval the interval between reports (zero disables reporting)
+     */
+    public StatsReporter(Duration interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Registers a statistics source.
+     *
+     * @param name the name under which the statistics are reported
+     * @param stats supplier of a statistics snapshot
+     */
+    public void register(String name, Supplier<?> stats) {
+        sources.put(name, stats);
+    }
+
+    /**
+     * Starts reporting, unless reporting is disabled.
+     */
+    public synchronized void start() {
+        if (interval.isZero() || interval.isNegative() || scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cee-stats-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::report, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Logs the current statistics of every registered source.
+     */
+    public void report() {
+        sources.forEach((name, stats) -> {
+            try {
+                LOG.info("{}: {}", name, stats.get());
+            } catch (Exception e) {
+                LOG.warn("Unable to collect statistics for {}: {}", name, e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ai.wanaku.code.engine.camel;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.apache.camel.ProducerTemplate;
+import ai.wanaku.code.engine.camel.context.ContextProfile;
+import ai.wanaku.code.engine.camel.context.ContextReserve;
+import ai.wanaku.code.engine.camel.downloader.DependencyCache;
+import com.sun.management.UnixOperatingSystemMXBean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Soak test checking that class loaders do not leak across executions.
+ *
+ * <p>Runs many executions over rotating dependency sets, more than the dependency cache holds, and
+ * checks that metaspace, the loaded class count and the open file descriptors stay flat. A regular build
+ * only runs a short round, the {@code soak} profile runs 10,000 executions. The number of executions can
+ * also be set with the {@code cee.soak.executions} system property.
+ */
+class ClassLoaderSoakIT {
+    private static final int EXECUTIONS = Integer.getInteger("cee.soak.executions", 200);
+    private static final int WARMUP_EXECUTIONS = 100;
+    private static final int DEPENDENCY_SETS = 8;
+
+    private static final long MAX_METASPACE_GROWTH = 16L * 1024 * 1024;
+    private static final long MAX_LOADED_CLASSES_GROWTH = 500;
+    private static final long MAX_FILE_DESCRIPTORS_GROWTH = 16;
+
+    private static final String ROUTES =
+            """
+            - route:
+                id: soak-route
+                from:
+                  uri: "direct:start"
+                  steps:
+                    - setBody:
+                        simple: "Hello ${body}"
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private Path jar;
+
+    private ClassLoader resolve(List<String> dependencies, String repositories) throws Exception {
+        return new URLClassLoader(new URL[] {jar.toUri().toURL()}, getClass().getClassLoader());
+    }
+
+    private void execute(ContextReserve reserve, DependencyCache cache, int iteration) throws Exception {
+        WanakuCamelManager manager =
+                new WanakuCamelManager("org.acme:lib-" + (iteration % DEPENDENCY_SETS) + ":1.0", null, reserve, cache);
+        try {
+            manager.loadRoutesFromString(ROUTES);
+            try (ProducerTemplate template = manager.getCamelContext().createProducerTemplate()) {
+                assertEquals("Hello World", template.requestBody("direct:start", "World", String.class));
+            }
+
+            // Reading from the jar opens it, like loading dependency classes would
+            try (InputStream stream = manager.getCamelContext()
+                    .getApplicationContextClassLoader()
+                    .getResourceAsStream("soak.properties")) {
+                assertNotNull(stream);
+            }
+        } finally {
+            manager.stop();
+        }
+    }
+
+    private static long metaspaceUsed() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> "Metaspace".equals(pool.getName()))
+                .map(MemoryPoolMXBean::getUsage)
+                .mapToLong(usage -> usage.getUsed())
+                .sum();
+    }
+
+    private static long openFileDescriptors() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof UnixOperatingSystemMXBean unix ? unix.getOpenFileDescriptorCount() : 0;
+    }
+
+    private static void settle() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+    }
+
+    @Test
+    void classLoadersDoNotLeak() throws Exception {
+        jar = tempDir.resolve("soak.jar");
+        try (OutputStream out = Files.newOutputStream(jar);
+                JarOutputStream jarOut = new JarOutputStream(out)) {
+            jarOut.putNextEntry(new JarEntry("soak.properties"));
+            jarOut.write("name=soak".getBytes());
+            jarOut.closeEntry();
+        }
+
+        ContextReserve reserve = ContextReserve.disabled(ContextProfile.LEAN);
+        DependencyCache cache = new DependencyCache(2, this::resolve);
+
+        for (int i = 0; i < WARMUP_EXECUTIONS; i++) {
+            execute(reserve, cache, i);
+        }
+        settle();
+        final long metaspace = metaspaceUsed();
+        final long loadedClasses = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        final long fileDescriptors = openFileDescriptors();
+
+        for (int i = 0; i < EXECUTIONS; i++) {
+            execute(reserve, cache, i);
+        }
+        settle();
+
+        long metaspaceGrowth = metaspaceUsed() - metaspace;
+        long loadedClassesGrowth = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount() - loadedClasses;
+        long fileDescriptorsGrowth = openFileDescriptors() - fileDescriptors;
+        assertTrue(metaspaceGrowth <= MAX_METASPACE_GROWTH, "Metaspace grew by " + metaspaceGrowth + " bytes");
+        assertTrue(
+                loadedClassesGrowth <= MAX_LOADED_CLASSES_GROWTH, "Loaded class count grew by " + loadedClassesGrowth);
+        assertTrue(
+                fileDescriptorsGrowth <= MAX_FILE_DESCRIPTORS_GROWTH,
+                "Open file descriptors grew by " + fileDescriptorsGrowth);
+    }
+}
@@ -0,0 +1,148 @@
+package ai.wanaku.code.engine.camel;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.camel.CamelContext;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.spi.CamelContextTracker;
+import org.apache.camel.support.startup.BacklogStartupStepRecorder;
+import ai.wanaku.code.engine.camel.context.ContextProfile;
+import ai.wanaku.code.engine.camel.downloader.DependencyCanonicalizer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for WanakuCamelManager.
+ */
+class WanakuCamelManagerTest {
+
+    private WanakuCamelManager manager;
+
+    @AfterEach
+    void tearDown() {
+        if (manager != null) {
+            manager.stop();
+        }
+    }
+
+    @Test
+    void loadsRoutesFromString() throws Exception {
+        manager = new WanakuCamelManager("", null);
+        manager.loadRoutesFromString(
+                """
+                - route:
+                    id: test-route
+                    from:
+                      uri: "direct:start"
+                      steps:
+                        - setBody:
+                            simple: "Hello ${body}"
+                """);
+
+        assertEquals(1, manager.getCamelContext().getRoutes().size());
+        try (ProducerTemplate template = manager.getCamelContext().createProducerTemplate()) {
+            assertEquals("Hello World", template.requestBody("direct:start", "World", String.class));
+        }
+    }
+
+    @Test
+    void runsRoutesWithLeanProfile() throws Exception {
+        manager = new WanakuCamelManager("", null, ContextProfile.LEAN);
+        manager.loadRoutesFromString(
+                """
+                - route:
+                    id: test-route
+                    from:
+                      uri: "direct:start"
+                      steps:
+                        - setBody:
+                            simple: "Hello ${body}"
+                """);
+
+        assertNull(manager.getCamelContext().getManagementStrategy().getManagementAgent());
+        BacklogStartupStepRecorder recorder = assertInstanceOf(
+                BacklogStartupStepRecorder.class,
+                manager.getCamelContext().getCamelContextExtension().getStartupStepRecorder());
+        assertTrue(recorder.steps().findAny().isPresent());
+        try (ProducerTemplate template = manager.getCamelContext().createProducerTemplate()) {
+            assertEquals("Hello World", template.requestBody("direct:start", "World", String.class));
+        }
+    }
+
+    @Test
+    void failsWhenStringHasNoRoutes() throws Exception {
+        manager = new WanakuCamelManager("", null);
+
+        assertThrows(RuntimeException.class, () -> manager.loadRoutesFromString("[]"));
+    }
+
+    @Test
+    void stopsTheContextWhenRoutesFailToLoad(@TempDir Path tempDir) throws Exception {
+        Path routesPath = Files.writeString(tempDir.resolve("routes.yaml"), "[]");
+        List<CamelContext> created = new CopyOnWriteArrayList<>();
+        CamelContextTracker tracker = new CamelContextTracker() {
+            @Override
+            public void contextCreated(CamelContext camelContext) {
+                created.add(camelContext);
+            }
+        };
+
+        tracker.open();
+        try {
+            assertThrows(RuntimeException.class, () -> new WanakuCamelManager(routesPath, "", null));
+        } finally {
+            tracker.close();
+        }
+
+        assertEquals(1, created.size());
+        assertTrue(created.get(0).isStopped());
+    }
+
+    @Test
+    void parsesDependencyLists() {
+        assertEquals(List.of("a:b:1", "c:d:2"), WanakuCamelManager.parseDependencies(" a:b:1,\n# comment\n c:d:2 ,"));
+        assertEquals("a:b:1,c:d:2", WanakuCamelManager.dependencyKey("a:b:1\nc:d:2"));
+        assertEquals("", WanakuCamelManager.dependencyKey(null));
+    }
+
+    @Test
+    void canonicalizesDependencyLists() {
+        String camelVersion = DependencyCanonicalizer.engine().getCamelVersion();
+
+        assertEquals(
+                WanakuCamelManager.dependencyKey("org.acme:b:1,org.acme:a:1"),
+                WanakuCamelManager.dependencyKey("org.acme:a:1\n org.acme:b:1 ,org.acme:a:1"));
+        assertEquals(
+                List.of("org.acme:a:1", "org.apache.camel:camel-kafka:" + camelVersion),
+                WanakuCamelManager.parseDependencies(
+                        "org.apache.camel:camel-kafka,org.apache.camel:camel-direct:4.0.0,org.acme:a:1"));
+        assertEquals(
+                List.of("org.apache.camel:camel-kafka:" + camelVersion),
+                WanakuCamelManager.parseDependencies("org.apache.camel:camel-kafka:4.0.0,org.apache.camel:camel-core"));
+    }
+
+    @Test
+    void keepsTheVersionOfCamelGroupArtifactsNotReleasedWithCamel() {
+        DependencyCanonicalizer canonicalizer = new DependencyCanonicalizer(
+                DependencyCanonicalizer.class.getClassLoader(), () -> Set.of("camel-kafka"));
+        String camelVersion = canonicalizer.getCamelVersion();
+
+        assertEquals(
+                List.of("org.apache.camel:camel-acme:1.2.3", "org.apache.camel:camel-kafka:" + camelVersion),
+                canonicalizer.canonicalize(
+                        List.of("org.apache.camel:camel-kafka:4.0.0", "org.apache.camel:camel-acme:1.2.3")));
+        assertEquals(
+                List.of("org.apache.camel:camel-acme:" + camelVersion),
+                canonicalizer.canonicalize(List.of("org.apache.camel:camel-acme")));
+    }
+}
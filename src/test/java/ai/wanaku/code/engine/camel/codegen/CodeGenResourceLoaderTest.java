@@ -11,6 +11,7 @@ import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -111,6 +112,70 @@ class CodeGenResourceLoaderTest {
         assertTrue(loader.hasOrchestrationTemplate());
     }
 
+    @Test
+    void cachesContents() throws IOException {
+        CodeGenResourceLoader loader = CodeGenResourceLoader.load(packageDir);
+
+        String kamelet = loader.readKamelet("sample");
+        loader.readOrchestrationTemplate();
+        assertSame(kamelet, loader.readKamelet("sample"));
+        assertEquals("Template content", loader.readOrchestrationTemplate());
+
+        ContentCache.Stats stats = loader.getContentCacheStats();
+        assertEquals(2, stats.size());
+        assertEquals(2, stats.hits());
+        assertEquals(2, stats.misses());
+    }
+
+    @Test
+    void readsChangedContentsAgain() throws IOException {
+        CodeGenResourceLoader loader = CodeGenResourceLoader.load(packageDir);
+        loader.readKamelet("sample");
+        loader.readOrchestrationTemplate();
+
+        // A local package edited in place is served as it is now
+        Files.writeString(packageDir.resolve("kamelets/sample.kamelet.yaml"), "name: changed-sample");
+        assertEquals("name: changed-sample", loader.readKamelet("sample"));
+        assertEquals("name: changed-sample", loader.readKamelet("sample"));
+
+        Files.delete(packageDir.resolve("templates/orchestration.txt"));
+        assertFalse(loader.hasOrchestrationTemplate());
+        assertThrows(IOException.class, loader::readOrchestrationTemplate);
+
+        ContentCache.Stats stats = loader.getContentCacheStats();
+        assertEquals(1, stats.hits());
+        assertEquals(3, stats.misses());
+    }
+
+    @Test
+    void evictsContentsBeyondBudget() throws IOException {
+        long kameletBytes = Files.size(packageDir.resolve("kamelets/sample.kamelet.yaml"));
+        CodeGenResourceLoader loader = CodeGenResourceLoader.load(packageDir, kameletBytes);
+
+        loader.readKamelet("sample");
+        loader.readOrchestrationTemplate();
+        loader.readKamelet("sample");
+
+        ContentCache.Stats stats = loader.getContentCacheStats();
+        assertEquals(1, stats.size());
+        assertTrue(stats.bytes() <= kameletBytes);
+        assertEquals(3, stats.misses());
+        assertEquals(2, stats.evictions());
+    }
+
+    @Test
+    void readsContentsWithCacheDisabled() throws IOException {
+        CodeGenResourceLoader loader = CodeGenResourceLoader.load(packageDir, 0);
+
+        loader.readKamelet("sample");
+        loader.readKamelet("sample");
+
+        ContentCache.Stats stats = loader.getContentCacheStats();
+        assertEquals(0, stats.size());
+        assertEquals(0, stats.hits());
+        assertEquals(2, stats.misses());
+    }
+
     @Test
     void loadThrowsForMissingDirectory() {
         Path nonexistent = tempDir.resolve("nonexistent");
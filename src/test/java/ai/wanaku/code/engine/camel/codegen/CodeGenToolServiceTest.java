@@ -51,6 +51,35 @@ class CodeGenToolServiceTest {
         assertTrue(service.isReady());
     }
 
+    @Test
+    void precomputesStaticResults() throws Exception {
+        Map<String, String> results = service.getStaticResults();
+
+        // The template may change in place, so it is not precomputed
+        assertEquals(1, results.size());
+        assertEquals(
+                service.invokeTool("codegen://searchServicesTool", null).getContent(),
+                results.get("searchServicesTool"));
+        assertTrue(CodeGenToolService.unready().getStaticResults().isEmpty());
+    }
+
+    @Test
+    void searchServicesReportsInvalidPages() throws Exception {
+        Map<String, String> args = new HashMap<>();
+        args.put("limit", "many");
+
+        CodeGenToolService.ToolResult result = service.invokeTool("codegen://searchServicesTool", args);
+        assertTrue(result.isError());
+        assertEquals("Invalid limit: many", result.getError());
+
+        args.put("limit", "1");
+        args.put("cursor", "bogus");
+        assertTrue(service.invokeTool("codegen://searchServicesTool", args).isError());
+
+        args.remove("cursor");
+        assertFalse(service.invokeTool("codegen://searchServicesTool", args).isError());
+    }
+
     @Test
     void unreadyServiceIsNotReady() {
         CodeGenToolService unready = CodeGenToolService.unready();
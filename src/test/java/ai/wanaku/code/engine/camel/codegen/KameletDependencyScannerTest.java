@@ -0,0 +1,61 @@
+package ai.wanaku.code.engine.camel.codegen;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import org.apache.camel.catalog.DefaultCamelCatalog;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for KameletDependencyScanner.
+ */
+class KameletDependencyScannerTest {
+
+    private final KameletDependencyScanner scanner = new KameletDependencyScanner();
+    private final String version = new DefaultCamelCatalog().getCatalogVersion();
+
+    @Test
+    void findsDeclaredDependenciesAndTemplateComponents() {
+        Set<String> coordinates = scanner.scan(
+                """
+                apiVersion: camel.apache.org/v1alpha1
+                kind: Kamelet
+                metadata:
+                  name: sample-sink
+                spec:
+                  dependencies:
+                    - "camel:aws2-s3"
+                    - "mvn:org.acme:acme-lib:1.0"
+                    - "github:acme/acme-lib"
+                  template:
+                    from:
+                      uri: "kamelet:source"
+                      steps:
+                        - to:
+                            uri: "kafka:{{topic}}"
+                        - toD: "{{scheme}}:dynamic"
+                        - to: "timer:unused"
+                """);
+
+        assertEquals(
+                Set.of(
+                        "org.acme:acme-lib:1.0",
+                        "org.apache.camel:camel-aws2-s3:" + version,
+                        "org.apache.camel:camel-kafka:" + version),
+                coordinates);
+    }
+
+    @Test
+    void scansEveryKameletOfThePackage() throws Exception {
+        Path packageDir = Paths.get(getClass().getResource("/codegen-package").toURI());
+
+        Set<String> coordinates = scanner.scan(CodeGenResourceLoader.load(packageDir));
+
+        assertTrue(coordinates.contains("org.apache.camel:camel-http:" + version));
+        assertTrue(coordinates.contains("org.apache.camel:camel-kafka:" + version));
+        assertEquals(2, coordinates.size());
+    }
+}
@@ -0,0 +1,60 @@
+package ai.wanaku.code.engine.camel.codegen;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for KameletNameIndex.
+ */
+class KameletNameIndexTest {
+
+    private static final KameletNameIndex INDEX = new KameletNameIndex(List.of(
+            "kafka-sink",
+            "kafka-source",
+            "kafka-batch-sink",
+            "http-source",
+            "http-sink",
+            "aws-s3-source",
+            "slack-sink",
+            "log-action"));
+
+    private static List<String> names(List<KameletNameIndex.Match> matches) {
+        return matches.stream().map(KameletNameIndex.Match::name).toList();
+    }
+
+    @Test
+    void suggestsClosestNames() {
+        assertEquals(List.of("kafka-sink", "kafka-source", "kafka-batch-sink"), names(INDEX.suggest("kafka-snk", 3)));
+        assertEquals("slack-sink", names(INDEX.suggest("slak-sink", 5)).get(0));
+        assertEquals(List.of("log-action"), names(INDEX.suggest("log", 5)));
+        assertEquals(1.0, INDEX.suggest("Kafka-Sink", 1).get(0).similarity());
+    }
+
+    @Test
+    void suggestsNothingForUnrelatedNames() {
+        assertTrue(INDEX.suggest("ftp", 5).isEmpty());
+        assertTrue(INDEX.suggest("", 5).isEmpty());
+        assertTrue(INDEX.suggest("kafka-sink", 0).isEmpty());
+        assertTrue(new KameletNameIndex(List.of()).suggest("kafka-sink", 5).isEmpty());
+    }
+
+    @Test
+    void resolvesUnambiguousNearMatches() {
+        assertEquals(Optional.of("kafka-sink"), INDEX.resolve("kafak-sink"));
+        assertEquals(Optional.of("http-source"), INDEX.resolve("http-sorce"));
+        assertEquals(Optional.of("aws-s3-source"), INDEX.resolve("aws-s3-sorce"));
+
+        // Equally close to several kamelets, or not close enough
+        assertEquals(Optional.empty(), INDEX.resolve("kafka"));
+        assertEquals(Optional.empty(), INDEX.resolve("log"));
+    }
+
+    @Test
+    void buildsPaddedTrigrams() {
+        assertEquals(List.of("  s", " s3", "s3 "), List.copyOf(KameletNameIndex.trigrams("S3")));
+    }
+}
@@ -0,0 +1,140 @@
+package ai.wanaku.code.engine.camel.codegen;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for KameletSearchIndex.
+ */
+class KameletSearchIndexTest {
+
+    private static final String AWS_S3_SOURCE =
+            """
+            metadata:
+              name: aws-s3-source
+              labels:
+                camel.apache.org/kamelet.type: source
+            spec:
+              definition:
+                title: AWS S3 Source
+                description: Receive data from an Amazon S3 bucket
+                properties:
+                  bucketNameOrArn:
+                    type: string
+                  region:
+                    type: string
+            """;
+
+    private static final String SLACK_SINK =
+            """
+            metadata:
+              name: slack-sink
+              labels:
+                camel.apache.org/kamelet.type: sink
+            spec:
+              definition:
+                title: Slack Sink
+                description: Send messages to a Slack channel
+                properties:
+                  channel:
+                    type: string
+            """;
+
+    private static final String LOG_ACTION =
+            """
+            metadata:
+              name: log-action
+            spec:
+              definition:
+                title: Log Action
+                description: Logs the messages going through, useful to debug a sink or a source
+            """;
+
+    private static List<String> names(List<KameletSearchIndex.Hit> hits) {
+        return hits.stream().map(KameletSearchIndex.Hit::name).toList();
+    }
+
+    private static KameletSearchIndex index() {
+        return KameletSearchIndex.build(
+                Map.of("aws-s3-source", AWS_S3_SOURCE, "slack-sink", SLACK_SINK, "log-action", LOG_ACTION));
+    }
+
+    @Test
+    void ranksMatchesByRelevance() {
+        KameletSearchIndex index = index();
+
+        assertEquals(3, index.size());
+        assertEquals(List.of("slack-sink"), names(index.search("post to slack", 10)));
+        assertEquals(List.of("aws-s3-source"), names(index.search("Amazon bucket", 10)));
+        assertEquals("slack-sink", names(index.search("sink messages", 10)).get(0));
+        assertEquals("aws-s3-source", names(index.search("source", 10)).get(0));
+    }
+
+    @Test
+    void matchesPropertyNamesAndLabels() {
+        KameletSearchIndex index = index();
+
+        assertEquals(List.of("aws-s3-source"), names(index.search("bucket name", 1)));
+        assertEquals(List.of("aws-s3-source"), names(index.search("bucketNameOrArn", 10)));
+        assertEquals(List.of("aws-s3-source"), names(index.search("REGION", 10)));
+    }
+
+    @Test
+    void limitsAndOrdersResults() {
+        KameletSearchIndex index = index();
+
+        List<KameletSearchIndex.Hit> hits = index.search("sink source", 10);
+        assertEquals(3, hits.size());
+        for (int i = 1; i < hits.size(); i++) {
+            assertTrue(hits.get(i - 1).score() >= hits.get(i).score());
+        }
+        assertEquals(names(hits).subList(0, 2), names(index.search("sink source", 2)));
+    }
+
+    @Test
+    void returnsNothingWithoutMatches() {
+        KameletSearchIndex index = index();
+
+        assertTrue(index.search("kafka", 10).isEmpty());
+        assertTrue(index.search("", 10).isEmpty());
+        assertTrue(index.search("slack", 0).isEmpty());
+        assertTrue(KameletSearchIndex.empty().search("slack", 10).isEmpty());
+    }
+
+    @Test
+    void indexesNamesOfUnreadableKamelets() {
+        Map<String, String> kamelets = new HashMap<>();
+        kamelets.put("ftp-source", null);
+        kamelets.put("broken-sink", "spec: [unterminated");
+        KameletSearchIndex index = KameletSearchIndex.build(kamelets);
+
+        assertEquals(List.of("ftp-source"), names(index.search("ftp", 10)));
+        assertEquals(List.of("broken-sink"), names(index.search("broken", 10)));
+    }
+
+    @Test
+    void indexesPackageKamelets() throws Exception {
+        Path packageDir = Paths.get(getClass().getResource("/codegen-package").toURI());
+        KameletSearchIndex index = CodeGenResourceLoader.load(packageDir).getSearchIndex();
+
+        // The available services, log-action having no kamelet in the package
+        assertEquals(3, index.size());
+        assertEquals("kafka-sink", names(index.search("kafka topic", 10)).get(0));
+        assertEquals("http-source", names(index.search("poll an http url", 10)).get(0));
+        assertEquals(List.of("log-action"), names(index.search("log", 10)));
+    }
+
+    @Test
+    void tokenizesCamelCaseAndSeparators() {
+        assertEquals(
+                List.of("bootstrapservers", "bootstrap", "servers", "aws", "s3", "bucket"),
+                KameletSearchIndex.tokenize("bootstrapServers, AWS-S3 to a bucket"));
+    }
+}
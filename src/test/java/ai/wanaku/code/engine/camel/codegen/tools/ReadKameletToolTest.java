@@ -80,6 +80,31 @@ class ReadKameletToolTest {
         assertTrue(ex.getMessage().contains("not found"));
     }
 
+    @Test
+    void executeSuggestsClosestKamelets() throws IOException {
+        Files.writeString(resourceLoader.getKameletsDir().resolve("http-sink.kamelet.yaml"), "kind: Kamelet");
+        ReadKameletTool tool = new ReadKameletTool(CodeGenResourceLoader.load(resourceLoader.getPackageDir()));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> tool.execute("http-sorce"));
+        assertEquals("Kamelet 'http-sorce' not found. Did you mean: http-source, http-sink?", ex.getMessage());
+
+        ex = assertThrows(IllegalArgumentException.class, () -> tool.execute("ftp"));
+        assertEquals("Kamelet 'ftp' not found", ex.getMessage());
+    }
+
+    @Test
+    void executeResolvesMisspelledNamesInFuzzyMode() throws IOException {
+        Files.writeString(resourceLoader.getKameletsDir().resolve("http-sink.kamelet.yaml"), "kind: Kamelet");
+        ReadKameletTool tool = new ReadKameletTool(CodeGenResourceLoader.load(resourceLoader.getPackageDir()));
+
+        assertEquals(
+                "# Kamelet 'http-sorce' not found, showing 'http-source'\n" + SAMPLE_KAMELET_CONTENT,
+                tool.execute("http-sorce", true));
+        assertEquals(SAMPLE_KAMELET_CONTENT, tool.execute("http-source", true));
+        // Too close to both kamelets to pick one
+        assertThrows(IllegalArgumentException.class, () -> tool.execute("http-s", true));
+    }
+
     @Test
     void executeThrowsForPathTraversalAttempt() {
         ReadKameletTool tool = new ReadKameletTool(resourceLoader);
@@ -3,12 +3,24 @@ package ai.wanaku.code.engine.camel.codegen.tools;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import ai.wanaku.code.engine.camel.codegen.CodeGenResourceLoader;
+import ai.wanaku.code.engine.camel.codegen.KameletSearchIndex;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -91,4 +103,145 @@ class SearchServicesToolTest {
 
         assertTrue(result.contains("(No services available)"));
     }
+
+    @Test
+    void executeWithQueryListsBestMatches() throws IOException {
+        Path kameletsDir = resourceLoader.getKameletsDir();
+        Files.writeString(
+                kameletsDir.resolve("kafka-sink.kamelet.yaml"),
+                """
+                spec:
+                  definition:
+                    title: Kafka Sink
+                    description: Sends messages to a Kafka topic
+                """);
+        Files.writeString(
+                kameletsDir.resolve("http-source.kamelet.yaml"),
+                """
+                spec:
+                  definition:
+                    title: HTTP Source
+                    description: Periodically fetches data from an HTTP endpoint
+                """);
+        SearchServicesTool tool = new SearchServicesTool(CodeGenResourceLoader.load(resourceLoader.getPackageDir()));
+
+        String result = tool.execute("send to a kafka topic");
+        assertTrue(result.contains("# Context"));
+        assertTrue(result.endsWith("---\nkamelet:kafka-sink"));
+
+        assertTrue(tool.execute("ftp").contains("(No services match the query)"));
+        assertEquals(tool.execute(), tool.execute(" "));
+    }
+
+    @Test
+    void executeWithQueryOnlyListsAvailableServices() throws IOException {
+        Files.writeString(
+                resourceLoader.getKameletsDir().resolve("ftp-source.kamelet.yaml"),
+                """
+                spec:
+                  definition:
+                    title: FTP Source
+                    description: Downloads files from an FTP server
+                """);
+        SearchServicesTool tool = new SearchServicesTool(CodeGenResourceLoader.load(resourceLoader.getPackageDir()));
+
+        // A kamelet of the package that is not an available service is never listed
+        assertTrue(tool.execute("ftp").contains("(No services match the query)"));
+        assertTrue(tool.execute("ftp", 5, null).contains("(No services match the query)"));
+        // An available service without a kamelet in the package is found by name
+        assertTrue(tool.execute("log").endsWith("---\nkamelet:log-action"));
+        assertTrue(tool.execute("log", 5, null).endsWith("---\nkamelet:log-action"));
+    }
+
+    private static String cursorOf(String page) {
+        Matcher matcher = Pattern.compile("pass cursor (\\S+) to list them").matcher(page);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    @Test
+    void executePagesThroughServices() {
+        SearchServicesTool tool = new SearchServicesTool(resourceLoader);
+
+        String first = tool.execute(null, 2, null);
+        assertTrue(first.contains("kamelet:http-source\nkamelet:kafka-sink"));
+        assertFalse(first.contains("kamelet:log-action"));
+
+        String cursor = cursorOf(first);
+        assertNotNull(cursor);
+        String second = tool.execute(null, 2, cursor);
+        assertTrue(second.endsWith("---\nkamelet:log-action"));
+        assertNull(cursorOf(second));
+
+        // The same page every time
+        assertEquals(first, tool.execute("", 2, null));
+        assertEquals(second, tool.execute(" ", 2, cursor));
+        assertEquals(tool.execute(), tool.execute(null, null, null));
+    }
+
+    @Test
+    void executePagesThroughMatches() throws IOException {
+        Files.writeString(
+                resourceLoader.getPackageDir().resolve("config.properties"),
+                "available.services=kamelet:kafka-sink,kamelet:kafka-source,kamelet:kafka-batch-sink\n");
+        Path kameletsDir = resourceLoader.getKameletsDir();
+        for (String name : List.of("kafka-sink", "kafka-source", "kafka-batch-sink")) {
+            Files.writeString(
+                    kameletsDir.resolve(name + ".kamelet.yaml"),
+                    "spec:\n  definition:\n    title: " + name.replace('-', ' ') + "\n");
+        }
+        SearchServicesTool tool = new SearchServicesTool(CodeGenResourceLoader.load(resourceLoader.getPackageDir()));
+
+        List<String> listed = new ArrayList<>();
+        String cursor = null;
+        do {
+            String page = tool.execute("kafka", 1, cursor);
+            listed.add(page.substring(page.indexOf("---\n") + 4)
+                    .lines()
+                    .findFirst()
+                    .orElseThrow());
+            cursor = cursorOf(page);
+        } while (cursor != null);
+
+        assertEquals(3, listed.size());
+        assertEquals(3, Set.copyOf(listed).size());
+        assertTrue(tool.execute("ftp", 5, null).contains("(No services match the query)"));
+    }
+
+    @Test
+    void executeReusesRecentRankings() throws IOException {
+        Files.writeString(
+                resourceLoader.getPackageDir().resolve("config.properties"),
+                "available.services=kamelet:aa-sink,kamelet:aa-source,kamelet:bb-sink,kamelet:bb-source\n");
+        SearchServicesTool tool = new SearchServicesTool(CodeGenResourceLoader.load(resourceLoader.getPackageDir()));
+
+        String cursor = cursorOf(tool.execute("Aa", 1, null));
+        assertNotNull(cursor);
+        assertSame(tool.ranking("Aa"), tool.ranking("Aa"));
+        assertEquals(2, tool.ranking("Aa").size());
+
+        // "Aa" and "BB" have the same String hash code, but not the same digest
+        assertThrows(IllegalArgumentException.class, () -> tool.execute("BB", 1, cursor));
+        assertTrue(tool.execute("Aa", 1, cursor).contains("kamelet:aa-s"));
+
+        // Only the most recent rankings are kept
+        List<KameletSearchIndex.Hit> ranking = tool.ranking("Aa");
+        for (int i = 0; i < SearchServicesTool.MAX_CACHED_RANKINGS; i++) {
+            tool.ranking("query " + i);
+        }
+        assertNotSame(ranking, tool.ranking("Aa"));
+        assertEquals(ranking, tool.ranking("Aa"));
+    }
+
+    @Test
+    void executeRejectsInvalidPages() {
+        SearchServicesTool tool = new SearchServicesTool(resourceLoader);
+        String cursor = cursorOf(tool.execute(null, 1, null));
+
+        assertThrows(IllegalArgumentException.class, () -> tool.execute(null, 0, null));
+        assertThrows(
+                IllegalArgumentException.class, () -> tool.execute(null, SearchServicesTool.MAX_PAGE_SIZE + 1, null));
+        assertThrows(IllegalArgumentException.class, () -> tool.execute(null, 1, "not-a-cursor"));
+        // A cursor only continues the listing it was returned with
+        assertThrows(IllegalArgumentException.class, () -> tool.execute("kafka", 1, cursor));
+    }
 }
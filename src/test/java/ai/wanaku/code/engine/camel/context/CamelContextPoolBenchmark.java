@@ -0,0 +1,89 @@
+package ai.wanaku.code.engine.camel.context;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.apache.camel.ProducerTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ai.wanaku.code.engine.camel.WanakuCamelManager;
+
+/**
+ * Compares the latency distribution of an execution on a pooled context with one on a context created
+ * and stopped for the request, as CodeExecutorService did before contexts were pooled. The sample time
+ * mode reports the p50 and p99 of both.
+ *
+ * <p>Run after {@code mvn test-compile} with the test class path:
+ *
+ * <pre>
+ * mvn dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     org.openjdk.jmh.Main CamelContextPoolBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CamelContextPoolBenchmark {
+
+    private static final String ROUTES =
+            """
+            - route:
+                from:
+                  uri: "direct:start"
+                  steps:
+                    - setBody:
+                        simple: "Hello ${body}"
+            """;
+
+    private CamelContextPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new CamelContextPool(4, Duration.ofMinutes(5));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.close();
+    }
+
+    private static String execute(WanakuCamelManager manager) throws Exception {
+        manager.loadRoutesFromString(ROUTES);
+        try (ProducerTemplate template = manager.getCamelContext().createProducerTemplate()) {
+            return template.requestBody("direct:start", "World", String.class);
+        }
+    }
+
+    @Benchmark
+    public String perRequestContext() throws Exception {
+        WanakuCamelManager manager = new WanakuCamelManager("", null);
+        try {
+            return execute(manager);
+        } finally {
+            manager.stop();
+        }
+    }
+
+    @Benchmark
+    public String pooledContext() throws Exception {
+        WanakuCamelManager manager = pool.acquire(null, null);
+        try {
+            return execute(manager);
+        } finally {
+            pool.release(manager);
+        }
+    }
+}
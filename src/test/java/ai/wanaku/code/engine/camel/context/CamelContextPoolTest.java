@@ -0,0 +1,163 @@
+package ai.wanaku.code.engine.camel.context;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import ai.wanaku.code.engine.camel.WanakuCamelManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for CamelContextPool.
+ */
+class CamelContextPoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path routesPath;
+    private CamelContextPool pool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        routesPath = tempDir.resolve("routes.yaml");
+        Files.writeString(
+                routesPath,
+                """
+                - route:
+                    id: test-route
+                    from:
+                      uri: "direct:start"
+                      steps:
+                        - setBody:
+                            simple: "Hello ${body}"
+                """);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void releasedContextIsReusedWithoutRoutes() throws Exception {
+        pool = new CamelContextPool(2, Duration.ofMinutes(5));
+
+        WanakuCamelManager first = pool.acquire(null, null);
+        first.loadRoutes(routesPath);
+        assertEquals(1, first.getCamelContext().getRoutes().size());
+        pool.release(first);
+
+        assertEquals(1, pool.getIdleCount());
+
+        WanakuCamelManager second = pool.acquire("", null);
+        assertSame(first, second);
+        assertTrue(second.getCamelContext().getRoutes().isEmpty());
+        assertTrue(second.getCamelContext().isStarted());
+
+        // The same route id can be loaded again once the previous routes were removed
+        second.loadRoutes(routesPath);
+        assertEquals(1, second.getCamelContext().getRoutes().size());
+        pool.release(second);
+    }
+
+    @Test
+    void poolDoesNotExceedMaxIdlePerKey() throws Exception {
+        pool = new CamelContextPool(1, Duration.ofMinutes(5));
+
+        WanakuCamelManager first = pool.acquire(null, null);
+        WanakuCamelManager second = pool.acquire(null, null);
+        assertNotSame(first, second);
+
+        pool.release(first);
+        pool.release(second);
+
+        assertEquals(1, pool.getIdleCount());
+        assertFalse(second.getCamelContext().isStarted());
+    }
+
+    @Test
+    void disabledPoolStopsReleasedContexts() throws Exception {
+        pool = CamelContextPool.disabled();
+
+        WanakuCamelManager manager = pool.acquire(null, null);
+        manager.loadRoutes(routesPath);
+        pool.release(manager);
+
+        assertFalse(pool.isEnabled());
+        assertEquals(0, pool.getIdleCount());
+        assertFalse(manager.getCamelContext().isStarted());
+    }
+
+    @Test
+    void contextWithChangedErrorHandlerIsNotReturnedToPool() throws Exception {
+        pool = new CamelContextPool(2, Duration.ofMinutes(5));
+
+        WanakuCamelManager manager = pool.acquire(null, null);
+        manager.loadRoutesFromString(
+                """
+                - errorHandler:
+                    deadLetterChannel:
+                      deadLetterUri: "log:dead"
+                - route:
+                    id: test-route
+                    from:
+                      uri: "direct:start"
+                      steps:
+                        - setBody:
+                            simple: "Hello ${body}"
+                """);
+        pool.release(manager);
+
+        assertEquals(0, pool.getIdleCount());
+        assertFalse(manager.getCamelContext().isStarted());
+    }
+
+    @Test
+    void contextWithChangedGlobalOptionsIsNotReturnedToPool() throws Exception {
+        pool = new CamelContextPool(2, Duration.ofMinutes(5));
+
+        WanakuCamelManager manager = pool.acquire(null, null);
+        manager.loadRoutes(routesPath);
+        manager.getCamelContext().getGlobalOptions().put("CamelLogEipName", "tenant-a");
+        pool.release(manager);
+
+        assertEquals(0, pool.getIdleCount());
+        assertFalse(manager.getCamelContext().isStarted());
+    }
+
+    @Test
+    void contextWithChangedPropertiesIsNotReturnedToPool() throws Exception {
+        pool = new CamelContextPool(2, Duration.ofMinutes(5));
+
+        WanakuCamelManager manager = pool.acquire(null, null);
+        manager.loadRoutes(routesPath);
+        manager.getCamelContext().getPropertiesComponent().addInitialProperty("tenant.secret", "a");
+        pool.release(manager);
+
+        assertEquals(0, pool.getIdleCount());
+        assertFalse(manager.getCamelContext().isStarted());
+    }
+
+    @Test
+    void stoppedContextIsNotReturnedToPool() throws Exception {
+        pool = new CamelContextPool(2, Duration.ofMinutes(5));
+
+        WanakuCamelManager manager = pool.acquire(null, null);
+        manager.stop();
+        pool.release(manager);
+
+        assertEquals(0, pool.getIdleCount());
+    }
+}
@@ -0,0 +1,96 @@
+package ai.wanaku.code.engine.camel.context;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.time.Duration;
+import org.apache.camel.CamelContext;
+import org.apache.camel.ProducerTemplate;
+import ai.wanaku.code.engine.camel.WanakuCamelManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for ContextReserve.
+ */
+class ContextReserveTest {
+
+    private ContextReserve reserve;
+
+    @AfterEach
+    void tearDown() {
+        if (reserve != null) {
+            reserve.close();
+        }
+    }
+
+    private void awaitAvailable(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (reserve.getStats().available() < count && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, reserve.getStats().available());
+    }
+
+    @Test
+    void takesStartedContextsFromTheReserve() throws Exception {
+        reserve = new ContextReserve(1, ContextProfile.LEAN);
+        awaitAvailable(1);
+
+        ClassLoader classLoader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        CamelContext context = reserve.take(classLoader);
+        try {
+            assertTrue(context.isStarted());
+            assertTrue(context.getRoutes().isEmpty());
+            assertSame(classLoader, context.getApplicationContextClassLoader());
+            assertEquals(1, reserve.getStats().hits());
+        } finally {
+            context.stop();
+        }
+
+        // The reserve is refilled in the background
+        awaitAvailable(1);
+    }
+
+    @Test
+    void startsContextsOnDemandWhenDisabled() throws Exception {
+        reserve = ContextReserve.disabled(ContextProfile.DEFAULT);
+
+        CamelContext context = reserve.take(getClass().getClassLoader());
+        try {
+            assertTrue(context.isStarted());
+            assertEquals(new ContextReserve.Stats(0, 0, 0), reserve.getStats());
+        } finally {
+            context.stop();
+        }
+    }
+
+    @Test
+    void managerRunsRoutesOnReservedContext() throws Exception {
+        reserve = new ContextReserve(1, ContextProfile.DEFAULT);
+        awaitAvailable(1);
+
+        WanakuCamelManager manager = new WanakuCamelManager("", null, reserve);
+        try {
+            manager.loadRoutesFromString(
+                    """
+                    - route:
+                        id: test-route
+                        from:
+                          uri: "direct:start"
+                          steps:
+                            - setBody:
+                                simple: "Hello ${body}"
+                    """);
+            try (ProducerTemplate template = manager.getCamelContext().createProducerTemplate()) {
+                assertEquals("Hello World", template.requestBody("direct:start", "World", String.class));
+            }
+            assertEquals(1, reserve.getStats().hits());
+        } finally {
+            manager.stop();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ai.wanaku.code.engine.camel.context;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import ai.wanaku.code.engine.camel.WanakuCamelManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for RouteCache.
+ */
+class RouteCacheTest {
+
+    private static final String DIRECT_ROUTE =
+            """
+            - route:
+                id: test-route
+                from:
+                  uri: "direct:start"
+                  steps:
+                    - setBody:
+                        simple: "Hello ${body}"
+            """;
+
+    private static final String TIMER_ROUTE =
+            """
+            - route:
+                id: timer-route
+                from:
+                  uri: "timer:tick?period=60000"
+                  steps:
+                    - log: "tick"
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private CamelContextPool pool;
+    private RouteCache cache;
+
+    @BeforeEach
+    void setUp() {
+        pool = new CamelContextPool(2, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null) {
+            cache.close();
+        }
+        pool.close();
+    }
+
+    private WanakuCamelManager load(String code) throws Exception {
+        Path routesPath = Files.createTempFile(tempDir, "routes", ".yaml");
+        Files.writeString(routesPath, code);
+
+        WanakuCamelManager manager = pool.acquire(null, null);
+        manager.loadRoutes(routesPath);
+        return manager;
+    }
+
+    @Test
+    void keyDependsOnCodeAndNormalizedDependencies() {
+        assertEquals(RouteCache.key(DIRECT_ROUTE, "a:b:1, c:d:2"), RouteCache.key(DIRECT_ROUTE, "a:b:1\nc:d:2"));
+        assertNotEquals(RouteCache.key(DIRECT_ROUTE, null), RouteCache.key(TIMER_ROUTE, null));
+        assertNotEquals(RouteCache.key(DIRECT_ROUTE, null), RouteCache.key(DIRECT_ROUTE, "a:b:1"));
+    }
+
+    @Test
+    void repeatedSubmissionReusesLoadedRoutes() throws Exception {
+        cache = new RouteCache(2, pool);
+        String key = RouteCache.key(DIRECT_ROUTE, null);
+
+        assertNull(cache.acquire(key));
+
+        WanakuCamelManager manager = load(DIRECT_ROUTE);
+        cache.release(key, manager);
+
+        WanakuCamelManager cached = cache.acquire(key);
+        assertSame(manager, cached);
+        assertEquals(1, cached.getCamelContext().getRoutes().size());
+        cache.release(key, cached);
+
+        RouteCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.size());
+    }
+
+    @Test
+    void evictedContextsAreReturnedToPool() throws Exception {
+        cache = new RouteCache(1, pool);
+
+        WanakuCamelManager first = load(DIRECT_ROUTE);
+        cache.release("first", first);
+        WanakuCamelManager second = load(DIRECT_ROUTE);
+        cache.release("second", second);
+
+        assertEquals(1, cache.getStats().size());
+        assertEquals(1, cache.getStats().evictions());
+        assertEquals(1, pool.getIdleCount());
+        assertTrue(first.getCamelContext().getRoutes().isEmpty());
+        assertSame(second, cache.acquire("second"));
+        cache.release("second", second);
+    }
+
+    @Test
+    void routesWithBackgroundConsumersAreNotCached() throws Exception {
+        cache = new RouteCache(2, pool);
+        String key = RouteCache.key(TIMER_ROUTE, null);
+
+        WanakuCamelManager manager = load(TIMER_ROUTE);
+        cache.release(key, manager);
+
+        assertEquals(0, cache.getStats().size());
+        assertEquals(1, pool.getIdleCount());
+        assertTrue(manager.getCamelContext().getRoutes().isEmpty());
+    }
+
+    @Test
+    void disabledCacheHandsContextsToPool() throws Exception {
+        cache = new RouteCache(0, CamelContextPool.disabled());
+        String key = RouteCache.key(DIRECT_ROUTE, null);
+
+        WanakuCamelManager manager = load(DIRECT_ROUTE);
+        cache.release(key, manager);
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.acquire(key));
+        assertFalse(manager.getCamelContext().isStarted());
+    }
+}
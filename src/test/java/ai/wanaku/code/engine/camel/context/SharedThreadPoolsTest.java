@@ -0,0 +1,313 @@
+package ai.wanaku.code.engine.camel.context;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.spi.ThreadPoolProfile;
+import org.apache.camel.util.concurrent.CamelThreadFactory;
+import org.apache.camel.util.concurrent.ThreadPoolRejectedPolicy;
+import ai.wanaku.code.engine.camel.WanakuCamelManager;
+import ai.wanaku.code.engine.camel.downloader.DependencyCache;
+import ai.wanaku.code.engine.camel.util.ExecutorModel;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for SharedThreadPools.
+ */
+class SharedThreadPoolsTest {
+
+    private SharedThreadPools pools;
+
+    @AfterEach
+    void tearDown() {
+        if (pools != null) {
+            pools.close();
+        }
+    }
+
+    private static ThreadPoolProfile profile(
+            int maxPoolSize, int maxQueueSize, ThreadPoolRejectedPolicy rejectedPolicy) {
+        ThreadPoolProfile profile = new ThreadPoolProfile("test");
+        profile.setPoolSize(Math.min(10, maxPoolSize));
+        profile.setMaxPoolSize(maxPoolSize);
+        profile.setKeepAliveTime(60L);
+        profile.setMaxQueueSize(maxQueueSize);
+        profile.setRejectedPolicy(rejectedPolicy);
+        return profile;
+    }
+
+    private void assertIdle() throws InterruptedException {
+        // Threads give the cap back right after the last task of a route completes
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pools.getStats().activeThreads() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, pools.getStats().activeThreads());
+    }
+
+    @Test
+    void runsParallelRoutesOnSharedThreads() throws Exception {
+        pools = new SharedThreadPools(4, 1, ExecutorModel.PLATFORM);
+        ContextReserve reserve = new ContextReserve(0, ContextProfile.LEAN, pools);
+
+        WanakuCamelManager manager = new WanakuCamelManager("", null, reserve, DependencyCache.disabled());
+        try {
+            manager.loadRoutesFromString(
+                    """
+                    - route:
+                        id: split-route
+                        from:
+                          uri: "direct:start"
+                          steps:
+                            - split:
+                                simple: "${body}"
+                                parallelProcessing: true
+                                aggregationStrategy: "#class:org.apache.camel.processor.aggregate.GroupedBodyAggregationStrategy"
+                                steps:
+                                  - setBody:
+                                      simple: "${threadName}"
+                    """);
+            try (ProducerTemplate template = manager.getCamelContext().createProducerTemplate()) {
+                List<?> threads = template.requestBody("direct:start", List.of("a", "b", "c", "d"), List.class);
+                assertEquals(4, threads.size());
+                threads.forEach(name -> assertTrue(name.toString().startsWith("cee-route-"), name.toString()));
+            }
+        } finally {
+            manager.stop();
+        }
+        assertIdle();
+    }
+
+    @Test
+    void runsParallelRoutesOnVirtualThreads() throws Exception {
+        pools = new SharedThreadPools(4, 1, ExecutorModel.VIRTUAL);
+        ContextReserve reserve = new ContextReserve(0, ContextProfile.LEAN, pools);
+
+        WanakuCamelManager manager = new WanakuCamelManager("", null, reserve, DependencyCache.disabled());
+        try {
+            manager.getCamelContext().getRegistry().bind("virtual", (Processor) exchange ->
+                    exchange.getMessage().setBody(Thread.currentThread().isVirtual()));
+            manager.loadRoutesFromString(
+                    """
+                    - route:
+                        id: split-route
+                        from:
+                          uri: "direct:start"
+                          steps:
+                            - split:
+                                simple: "${body}"
+                                parallelProcessing: true
+                                aggregationStrategy: "#class:org.apache.camel.processor.aggregate.GroupedBodyAggregationStrategy"
+                                steps:
+                                  - process:
+                                      ref: virtual
+                    """);
+            try (ProducerTemplate template = manager.getCamelContext().createProducerTemplate()) {
+                List<?> virtual = template.requestBody("direct:start", List.of("a", "b", "c", "d"), List.class);
+                assertEquals(List.of(true, true, true, true), virtual);
+            }
+        } finally {
+            manager.stop();
+        }
+        assertIdle();
+    }
+
+    @Test
+    void runsNestedParallelSplitsOnceTheCapIsReached() throws Exception {
+        pools = new SharedThreadPools(1, 1, ExecutorModel.PLATFORM);
+        ContextReserve reserve = new ContextReserve(0, ContextProfile.LEAN, pools);
+
+        WanakuCamelManager manager = new WanakuCamelManager("", null, reserve, DependencyCache.disabled());
+        try {
+            manager.loadRoutesFromString(
+                    """
+                    - route:
+                        id: nested-split-route
+                        from:
+                          uri: "direct:start"
+                          steps:
+                            - split:
+                                simple: "${body}"
+                                parallelProcessing: true
+                                aggregationStrategy: "#class:org.apache.camel.processor.aggregate.GroupedBodyAggregationStrategy"
+                                steps:
+                                  - split:
+                                      simple: "${body}"
+                                      parallelProcessing: true
+                                      aggregationStrategy: "#class:org.apache.camel.processor.aggregate.GroupedBodyAggregationStrategy"
+                                      steps:
+                                        - delay:
+                                            constant: "20"
+                    """);
+            try (ProducerTemplate template = manager.getCamelContext().createProducerTemplate()) {
+                // More executions than shared threads, each holding one while waiting for its inner splits
+                List<CompletableFuture<Object>> replies = IntStream.range(0, 8)
+                        .mapToObj(i -> template.asyncRequestBody("direct:start", List.of(List.of(i, 1), List.of(i, 2))))
+                        .toList();
+                for (int i = 0; i < replies.size(); i++) {
+                    assertEquals(
+                            List.of(List.of(i, 1), List.of(i, 2)),
+                            replies.get(i).get(10, TimeUnit.SECONDS));
+                }
+            }
+        } finally {
+            manager.stop();
+        }
+        assertTrue(pools.getStats().callerRunsTasks() > 0);
+        assertIdle();
+    }
+
+    @Test
+    void leavesSedaConsumersOutOfTheCap() throws Exception {
+        pools = new SharedThreadPools(1, 1, ExecutorModel.PLATFORM);
+        ContextReserve reserve = new ContextReserve(0, ContextProfile.LEAN, pools);
+
+        WanakuCamelManager manager = new WanakuCamelManager("", null, reserve, DependencyCache.disabled());
+        try {
+            manager.loadRoutesFromString(
+                    """
+                    - route:
+                        id: start-route
+                        from:
+                          uri: "direct:start"
+                          steps:
+                            - to:
+                                uri: "seda:work"
+                    - route:
+                        id: seda-route
+                        from:
+                          uri: "seda:work?concurrentConsumers=4"
+                          steps:
+                            - split:
+                                simple: "${body}"
+                                parallelProcessing: true
+                                aggregationStrategy: "#class:org.apache.camel.processor.aggregate.GroupedBodyAggregationStrategy"
+                                steps:
+                                  - setBody:
+                                      simple: "${threadName}"
+                    """);
+            try (ProducerTemplate template = manager.getCamelContext().createProducerTemplate()) {
+                // The consumers poll on shared threads without holding the only capped one
+                List<?> threads = (List<?>) template.asyncRequestBody("direct:start", List.of("a", "b"))
+                        .get(10, TimeUnit.SECONDS);
+                assertEquals(2, threads.size());
+                threads.forEach(name -> assertTrue(name.toString().startsWith("cee-route-"), name.toString()));
+            }
+        } finally {
+            manager.stop();
+        }
+        assertIdle();
+    }
+
+    @Test
+    void recognizesDedicatedPools() {
+        ThreadPoolProfile consumers = new ThreadPoolProfile("seda://work");
+        consumers.setPoolSize(4);
+        consumers.setMaxPoolSize(4);
+        consumers.setKeepAliveTime(0L);
+        assertTrue(SharedThreadPools.isDedicated(consumers, Executors.defaultThreadFactory()));
+
+        ThreadPoolProfile work = profile(20, 1000, ThreadPoolRejectedPolicy.CallerRuns);
+        assertTrue(SharedThreadPools.isDedicated(work, new CamelThreadFactory("#name#", "ProducerTemplate", true)));
+        assertFalse(SharedThreadPools.isDedicated(work, new CamelThreadFactory("#name#", "Split", true)));
+    }
+
+    @Test
+    void runsInTheCallerOnceTheCapIsReached() throws Exception {
+        pools = new SharedThreadPools(1, 1, ExecutorModel.PLATFORM);
+        ExecutorService first =
+                pools.newThreadPool(profile(20, 0, ThreadPoolRejectedPolicy.Abort), Executors.defaultThreadFactory());
+        ExecutorService second = pools.newThreadPool(
+                profile(20, 1000, ThreadPoolRejectedPolicy.Abort), Executors.defaultThreadFactory());
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        first.execute(() -> {
+            blocked.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+        // The only shared thread is busy: the second pool runs its task in the caller rather than queuing it
+        AtomicInteger ran = new AtomicInteger();
+        Thread caller = Thread.currentThread();
+        second.execute(() -> {
+            assertSame(caller, Thread.currentThread());
+            ran.incrementAndGet();
+        });
+        assertEquals(1, ran.get());
+        assertEquals(new SharedThreadPools.Stats(1, 0, 1, 0), pools.getStats());
+
+        first.shutdownNow();
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertTrue(first.awaitTermination(10, TimeUnit.SECONDS));
+        assertIdle();
+    }
+
+    @Test
+    void appliesTheRejectionPolicyOnceThePoolIsFull() throws Exception {
+        pools = new SharedThreadPools(4, 1, ExecutorModel.PLATFORM);
+        ExecutorService pool =
+                pools.newThreadPool(profile(1, 1, ThreadPoolRejectedPolicy.Abort), Executors.defaultThreadFactory());
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.execute(() -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+        // The pool runs as many tasks as its size, queues one more and rejects the next
+        AtomicInteger ran = new AtomicInteger();
+        pool.execute(ran::incrementAndGet);
+        assertThrows(RejectedExecutionException.class, () -> pool.execute(ran::incrementAndGet));
+        assertEquals(new SharedThreadPools.Stats(1, 1, 0, 1), pools.getStats());
+
+        // The queued task takes over the thread of the finished one
+        release.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1, ran.get());
+        assertIdle();
+    }
+
+    @Test
+    void cancelsScheduledTasksOnShutdown() throws Exception {
+        pools = new SharedThreadPools(1, 1, ExecutorModel.PLATFORM);
+        ScheduledExecutorService scheduler =
+                pools.newScheduledThreadPool(new ThreadPoolProfile("test"), Executors.defaultThreadFactory());
+
+        CountDownLatch ticks = new CountDownLatch(2);
+        scheduler.scheduleAtFixedRate(ticks::countDown, 0, 10, TimeUnit.MILLISECONDS);
+        assertTrue(ticks.await(10, TimeUnit.SECONDS));
+
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(scheduler.isTerminated());
+    }
+}
@@ -0,0 +1,175 @@
+package ai.wanaku.code.engine.camel.downloader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.apache.camel.tooling.maven.MavenResolutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for ArtifactStore.
+ */
+class ArtifactStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path localRepository;
+    private ArtifactStore store;
+
+    @BeforeEach
+    void setUp() {
+        localRepository = tempDir.resolve("repository");
+        store = new ArtifactStore(localRepository, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    private void install(String groupId, String artifactId, String version) throws Exception {
+        Path dir = localRepository
+                .resolve(groupId.replace('.', '/'))
+                .resolve(artifactId)
+                .resolve(version);
+        Files.createDirectories(dir);
+        Files.writeString(
+                dir.resolve(artifactId + "-" + version + ".pom"),
+                """
+                <project xmlns="http://maven.apache.org/POM/4.0.0">
+                  <modelVersion>4.0.0</modelVersion>
+                  <groupId>%s</groupId>
+                  <artifactId>%s</artifactId>
+                  <version>%s</version>
+                </project>
+                """
+                        .formatted(groupId, artifactId, version));
+
+        try (OutputStream out = Files.newOutputStream(dir.resolve(artifactId + "-" + version + ".jar"));
+                JarOutputStream jar = new JarOutputStream(out)) {
+            jar.putNextEntry(new JarEntry("acme.properties"));
+            jar.write("name=acme".getBytes());
+            jar.closeEntry();
+        }
+    }
+
+    @Test
+    void resolvesFromTheLocalRepositoryWhenOffline() throws Exception {
+        install("org.acme", "acme-lib", "1.0");
+
+        List<Path> artifacts = store.resolveArtifacts(List.of("org.acme:acme-lib:1.0"), null);
+        assertEquals(1, artifacts.size());
+        assertEquals(
+                localRepository.toAbsolutePath(),
+                artifacts.get(0).getParent().getParent().getParent().getParent().getParent());
+
+        try (URLClassLoader classLoader = (URLClassLoader) store.resolve(List.of("org.acme:acme-lib:1.0"), null)) {
+            assertNotNull(classLoader.getResource("acme.properties"));
+        }
+    }
+
+    @Test
+    void failsForMissingArtifactsWhenOffline() {
+        assertThrows(
+                MavenResolutionException.class,
+                () -> store.resolveArtifacts(List.of("org.acme:missing:1.0"), "https://repo.example.com/maven2"));
+    }
+
+    @Test
+    void closeReleasesPendingAndLaterDownloads() throws Exception {
+        // A repository that accepts connections and never answers keeps the only download thread busy
+        try (ServerSocket repository = new ServerSocket(0)) {
+            List<Socket> connections = new CopyOnWriteArrayList<>();
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        connections.add(repository.accept());
+                    }
+                } catch (IOException e) {
+                    // Closed
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            String url = "http://127.0.0.1:" + repository.getLocalPort() + "/maven2";
+            ArtifactStore online = new ArtifactStore(tempDir.resolve("online"), false, 1);
+            CompletableFuture<List<Path>> busy = resolveAsync(online, "org.acme:busy:1.0", url);
+            await(() -> online.getStats().inFlight() == 1);
+            CompletableFuture<List<Path>> queued = resolveAsync(online, "org.acme:queued:1.0", url);
+            await(() -> online.getStats().inFlight() == 2);
+
+            online.close();
+            assertThrows(ExecutionException.class, () -> queued.get(10, TimeUnit.SECONDS));
+            assertThrows(ExecutionException.class, () -> resolveAsync(online, "org.acme:late:1.0", url)
+                    .get(10, TimeUnit.SECONDS));
+
+            for (Socket connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    private static CompletableFuture<List<Path>> resolveAsync(ArtifactStore store, String dependency, String url) {
+        CompletableFuture<List<Path>> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(store.resolveArtifacts(List.of(dependency), url));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void recognizesReleaseVersions() {
+        assertTrue(ArtifactStore.isRelease("org.acme:acme-lib:1.0"));
+        assertTrue(ArtifactStore.isRelease("org.acme:acme-lib:jar:tests:1.0"));
+        assertFalse(ArtifactStore.isRelease("org.acme:acme-lib:1.0-SNAPSHOT"));
+        assertFalse(ArtifactStore.isRelease("org.acme:acme-lib:[1.0,2.0)"));
+        assertFalse(ArtifactStore.isRelease("org.acme:acme-lib:LATEST"));
+        assertFalse(ArtifactStore.isRelease("org.acme:acme-lib"));
+    }
+
+    @Test
+    void parsesRepositoryLists() {
+        assertEquals(
+                List.of("https://a.example.com/maven2", "https://b.example.com/maven2"),
+                List.copyOf(ArtifactStore.parseRepositories(
+                        " https://a.example.com/maven2,https://b.example.com/maven2\nhttps://a.example.com/maven2")));
+        assertEquals(0, ArtifactStore.parseRepositories(null).size());
+    }
+}
@@ -0,0 +1,185 @@
+package ai.wanaku.code.engine.camel.downloader;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for DependencyCache.
+ */
+class DependencyCacheTest {
+
+    private final AtomicInteger resolutions = new AtomicInteger();
+
+    private ClassLoader resolve(List<String> dependencies, String repositories) {
+        resolutions.incrementAndGet();
+        return new TrackedClassLoader(getClass().getClassLoader());
+    }
+
+    @Test
+    void reusesResolutionOfTheSameDependencySet() throws Exception {
+        DependencyCache cache = new DependencyCache(2, this::resolve);
+
+        DependencyCache.Resolution first = cache.acquire(List.of("org.acme:a:1", "org.acme:b:1"), null);
+        DependencyCache.Resolution second =
+                cache.acquire(List.of("org.acme:b:1", "org.acme:a:1", "org.acme:a:1"), null);
+
+        assertSame(first.getClassLoader(), second.getClassLoader());
+        assertEquals(1, resolutions.get());
+        DependencyCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.size());
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    void evictsOnlyUnusedEntries() throws Exception {
+        DependencyCache cache = new DependencyCache(1, this::resolve);
+
+        DependencyCache.Resolution first = cache.acquire(List.of("org.acme:a:1"), null);
+        DependencyCache.Resolution second = cache.acquire(List.of("org.acme:b:1"), null);
+        assertEquals(2, cache.getStats().size());
+
+        // Releasing twice must not drop a reference held by someone else
+        first.release();
+        first.release();
+        assertEquals(1, cache.getStats().size());
+        assertEquals(1, cache.getStats().evictions());
+
+        DependencyCache.Resolution again = cache.acquire(List.of("org.acme:b:1"), null);
+        assertSame(second.getClassLoader(), again.getClassLoader());
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    void sharesResolutionsInProgress() throws Exception {
+        CountDownLatch resolving = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        DependencyCache cache = new DependencyCache(2, (dependencies, repositories) -> {
+            resolving.countDown();
+            proceed.await();
+            return resolve(dependencies, repositories);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<DependencyCache.Resolution> first =
+                    executor.submit(() -> cache.acquire(List.of("org.acme:a:1"), null));
+            assertTrue(resolving.await(10, TimeUnit.SECONDS));
+            Future<DependencyCache.Resolution> second =
+                    executor.submit(() -> cache.acquire(List.of("org.acme:a:1"), null));
+
+            // Give the second acquisition the time to join the resolution in progress
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (cache.getStats().hits() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            proceed.countDown();
+
+            assertSame(first.get().getClassLoader(), second.get().getClassLoader());
+            assertEquals(1, resolutions.get());
+
+            // Both references are held, releasing one must keep the entry
+            first.get().release();
+            assertEquals(1, cache.getStats().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void closesClassLoadersNoLongerUsed() throws Exception {
+        DependencyCache cache = new DependencyCache(1, this::resolve);
+
+        DependencyCache.Resolution first = cache.acquire(List.of("org.acme:a:1"), null);
+        DependencyCache.Resolution second = cache.acquire(List.of("org.acme:b:1"), null);
+        assertFalse(((TrackedClassLoader) second.getClassLoader()).closed);
+
+        // The cache is over its size, so the second entry is evicted and its class loader closed once released
+        second.release();
+        assertTrue(((TrackedClassLoader) second.getClassLoader()).closed);
+        assertFalse(((TrackedClassLoader) first.getClassLoader()).closed);
+
+        // The first entry fits in the cache and stays usable
+        first.release();
+        assertFalse(((TrackedClassLoader) first.getClassLoader()).closed);
+
+        DependencyCache disabled = new DependencyCache(0, this::resolve);
+        DependencyCache.Resolution uncached = disabled.acquire(List.of("org.acme:a:1"), null);
+        uncached.release();
+        assertTrue(((TrackedClassLoader) uncached.getClassLoader()).closed);
+    }
+
+    @Test
+    void resolvesChangingVersionsEveryTime() throws Exception {
+        DependencyCache cache = new DependencyCache(2, this::resolve);
+
+        for (String changing : List.of("org.acme:b:1.0-SNAPSHOT", "org.acme:b:[1.0,2.0)", "org.acme:b:LATEST")) {
+            DependencyCache.Resolution first = cache.acquire(List.of("org.acme:a:1", changing), null);
+            DependencyCache.Resolution second = cache.acquire(List.of("org.acme:a:1", changing), null);
+            assertNotSame(first.getClassLoader(), second.getClassLoader());
+
+            // Nothing keeps them, so their class loaders are closed as soon as they are released
+            first.release();
+            assertTrue(((TrackedClassLoader) first.getClassLoader()).closed);
+            second.release();
+        }
+        assertEquals(6, resolutions.get());
+        assertEquals(0, cache.getStats().size());
+    }
+
+    @Test
+    void keysDependencySetsByRepositories() throws Exception {
+        DependencyCache cache = new DependencyCache(4, this::resolve);
+
+        DependencyCache.Resolution central = cache.acquire(List.of("org.acme:a:1"), null);
+        DependencyCache.Resolution first = cache.acquire(List.of("org.acme:a:1"), "https://repo.acme.org/a");
+        DependencyCache.Resolution second = cache.acquire(List.of("org.acme:a:1"), " https://repo.acme.org/a ");
+        DependencyCache.Resolution other = cache.acquire(List.of("org.acme:a:1"), "https://repo.acme.org/b");
+
+        assertNotSame(central.getClassLoader(), first.getClassLoader());
+        assertSame(first.getClassLoader(), second.getClassLoader());
+        assertNotSame(first.getClassLoader(), other.getClassLoader());
+        assertEquals(3, resolutions.get());
+    }
+
+    @Test
+    void resolvesEveryTimeWhenDisabled() throws Exception {
+        DependencyCache cache = new DependencyCache(0, this::resolve);
+
+        DependencyCache.Resolution first = cache.acquire(List.of("org.acme:a:1"), null);
+        DependencyCache.Resolution second = cache.acquire(List.of("org.acme:a:1"), null);
+
+        assertNotSame(first.getClassLoader(), second.getClassLoader());
+        assertEquals(2, resolutions.get());
+        assertEquals(0, cache.getStats().size());
+    }
+
+    private static final class TrackedClassLoader extends URLClassLoader {
+        private volatile boolean closed;
+
+        private TrackedClassLoader(ClassLoader parent) {
+            super(new URL[0], parent);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ai.wanaku.code.engine.camel.downloader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.apache.camel.tooling.maven.MavenArtifact;
+import org.apache.camel.tooling.maven.MavenGav;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for DependencyLockfiles.
+ */
+class DependencyLockfilesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DependencyLockfiles lockfiles;
+    private Path jar;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        lockfiles = new DependencyLockfiles(tempDir.resolve("locks"));
+        jar = tempDir.resolve("acme-lib-1.0.jar");
+        Files.writeString(jar, "original");
+        Files.setLastModifiedTime(jar, FileTime.from(Instant.now().minusSeconds(60)));
+
+        lockfiles.write(
+                List.of("org.acme:acme-lib:1.0", "org.acme:acme-api:1.0"),
+                List.of(new MavenArtifact(MavenGav.parseGav("org.acme:acme-lib:1.0"), jar.toFile())));
+    }
+
+    @Test
+    void readsLockedArtifactsOfTheSameDependencySet() {
+        Optional<List<Path>> artifacts =
+                lockfiles.read(List.of("org.acme:acme-api:1.0", "org.acme:acme-lib:1.0", "org.acme:acme-lib:1.0"));
+
+        assertEquals(Optional.of(List.of(jar.toAbsolutePath())), artifacts);
+        assertFalse(lockfiles.read(List.of("org.acme:acme-lib:1.0")).isPresent());
+    }
+
+    @Test
+    void ignoresMissingOrModifiedArtifacts() throws Exception {
+        List<String> dependencies = List.of("org.acme:acme-lib:1.0", "org.acme:acme-api:1.0");
+
+        // Same size, but different content written after the lockfile
+        Files.writeString(jar, "tampered");
+        Files.setLastModifiedTime(jar, FileTime.from(Instant.now().plusSeconds(60)));
+        assertFalse(lockfiles.read(dependencies).isPresent());
+
+        Files.delete(jar);
+        assertFalse(lockfiles.read(dependencies).isPresent());
+    }
+
+    @Test
+    void neverLocksChangingVersions() {
+        List<String> snapshot = List.of("org.acme:acme-lib:1.0-SNAPSHOT");
+        lockfiles.write(
+                snapshot,
+                List.of(new MavenArtifact(MavenGav.parseGav("org.acme:acme-lib:1.0-SNAPSHOT"), jar.toFile())));
+        assertFalse(Files.exists(lockfiles.lockfile(snapshot)));
+
+        List<String> range = List.of("org.acme:acme-lib:[1.0,2.0)");
+        lockfiles.write(range, List.of(new MavenArtifact(MavenGav.parseGav("org.acme:acme-lib:1.0"), jar.toFile())));
+        assertFalse(Files.exists(lockfiles.lockfile(range)));
+
+        List<String> release = List.of("org.acme:acme-app:1.0");
+        lockfiles.write(
+                release, List.of(new MavenArtifact(MavenGav.parseGav("org.acme:acme-lib:1.1-SNAPSHOT"), jar.toFile())));
+        assertFalse(Files.exists(lockfiles.lockfile(release)));
+    }
+
+    @Test
+    void ignoresLockfilesWhenDisabled() {
+        DependencyLockfiles disabled = DependencyLockfiles.disabled();
+
+        assertFalse(disabled.isEnabled());
+        assertFalse(disabled.read(List.of("org.acme:acme-lib:1.0")).isPresent());
+        assertTrue(Files.isRegularFile(lockfiles.lockfile(List.of("org.acme:acme-api:1.0", "org.acme:acme-lib:1.0"))));
+    }
+}
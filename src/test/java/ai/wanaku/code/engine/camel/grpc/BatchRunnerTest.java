@@ -0,0 +1,66 @@
+package ai.wanaku.code.engine.camel.grpc;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.camel.ProducerTemplate;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for BatchRunner.
+ */
+class BatchRunnerTest {
+
+    @Test
+    void parsesJsonList() {
+        assertEquals(
+                List.of("a", "{\"x\": 1}", "42", ""), BatchRunner.parseBodies("[\"a\", \"{\\\"x\\\": 1}\", 42, null]"));
+    }
+
+    @Test
+    void parsesYamlList() {
+        assertEquals(List.of("first", "second"), BatchRunner.parseBodies("- first\n- second\n"));
+    }
+
+    @Test
+    void rejectsNonListValues() {
+        assertThrows(IllegalArgumentException.class, () -> BatchRunner.parseBodies("just a string"));
+        assertThrows(IllegalArgumentException.class, () -> BatchRunner.parseBodies("[unterminated"));
+    }
+
+    @Test
+    void rejectsStructuredItems() {
+        assertThrows(IllegalArgumentException.class, () -> BatchRunner.parseBodies("[{\"x\": 1}]"));
+    }
+
+    @Test
+    void rejectsTooManyBodies() {
+        String bodies = "[" + String.join(",", Collections.nCopies(BatchRunner.MAX_BODIES + 1, "x")) + "]";
+        assertThrows(IllegalArgumentException.class, () -> BatchRunner.parseBodies(bodies));
+    }
+
+    @Test
+    void runsLongBatchOfImmediateReplies() throws Exception {
+        // A template replying before the call returns, as a synchronous route does
+        ProducerTemplate template = (ProducerTemplate) Proxy.newProxyInstance(
+                ProducerTemplate.class.getClassLoader(),
+                new Class<?>[] {ProducerTemplate.class},
+                (proxy, method, args) -> CompletableFuture.completedFuture(args[1]));
+
+        AtomicInteger items = new AtomicInteger();
+        List<String> bodies = Collections.nCopies(200_000, "x");
+        BatchRunner.Result result = new BatchRunner(
+                        template, bodies, 1, (index, reply, error) -> items.incrementAndGet(), () -> false)
+                .run()
+                .get(30, TimeUnit.SECONDS);
+
+        assertEquals(new BatchRunner.Result(bodies.size(), 0, 0), result);
+        assertEquals(bodies.size(), items.get());
+    }
+}
@@ -0,0 +1,102 @@
+package ai.wanaku.code.engine.camel.grpc;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import io.grpc.stub.StreamObserver;
+import ai.wanaku.core.exchange.v1.CodeExecutionReply;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for ChunkedReplyWriter.
+ */
+class ChunkedReplyWriterTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final List<String> chunks = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<Throwable> done = new CompletableFuture<>();
+
+    private final StreamObserver<CodeExecutionReply> observer = new StreamObserver<>() {
+        @Override
+        public void onNext(CodeExecutionReply value) {
+            chunks.add(value.getContentList().get(0));
+        }
+
+        @Override
+        public void onError(Throwable t) {}
+
+        @Override
+        public void onCompleted() {}
+    };
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private ChunkedReplyWriter writer(Reader reader) {
+        return new ChunkedReplyWriter(reader, 4, observer, new Object(), executor, done::complete);
+    }
+
+    @Test
+    void sendsTheReplyInChunks() throws Exception {
+        writer(new StringReader("Hello World")).signal();
+
+        assertNull(done.get(10, TimeUnit.SECONDS));
+        assertEquals(List.of("Hell", "o Wo", "rld"), chunks);
+    }
+
+    @Test
+    void closesTheReaderFromTheDrainLoopOnceCancelled() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        CompletableFuture<Thread> closedBy = new CompletableFuture<>();
+        Reader reader = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                reading.countDown();
+                try {
+                    assertTrue(proceed.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                buffer[offset] = 'x';
+                return 1;
+            }
+
+            @Override
+            public void close() {
+                closedBy.complete(Thread.currentThread());
+            }
+        };
+
+        ChunkedReplyWriter writer = writer(reader);
+        writer.signal();
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+        // The read in progress is left alone
+        writer.cancel(new CancellationException("cancelled"));
+        assertFalse(closedBy.isDone());
+        assertFalse(done.isDone());
+
+        proceed.countDown();
+        assertInstanceOf(CancellationException.class, done.get(10, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), closedBy.get(10, TimeUnit.SECONDS));
+        assertTrue(chunks.isEmpty());
+    }
+}
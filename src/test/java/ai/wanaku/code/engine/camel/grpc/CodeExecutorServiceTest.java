@@ -0,0 +1,570 @@
+package ai.wanaku.code.engine.camel.grpc;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import ai.wanaku.code.engine.camel.context.CamelContextPool;
+import ai.wanaku.code.engine.camel.context.RouteCache;
+import ai.wanaku.code.engine.camel.limiter.AdaptiveConcurrencyLimiter;
+import ai.wanaku.code.engine.camel.session.ExecutionSessionManager;
+import ai.wanaku.core.exchange.v1.CodeExecutionReply;
+import ai.wanaku.core.exchange.v1.CodeExecutionRequest;
+import ai.wanaku.core.exchange.v1.ExecutionStatus;
+import ai.wanaku.core.exchange.v1.OutputType;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for CodeExecutorService.
+ */
+class CodeExecutorServiceTest {
+
+    private static final String ROUTES =
+            """
+            - route:
+                id: test-route
+                from:
+                  uri: "direct:start"
+                  steps:
+                    - setBody:
+                        simple: "Hello ${body}"
+            """;
+
+    private static final String FAILING_ROUTES =
+            """
+            - route:
+                id: failing-route
+                from:
+                  uri: "direct:start"
+                  steps:
+                    - throwException:
+                        exceptionType: "java.lang.IllegalStateException"
+                        message: "boom"
+            """;
+
+    private static final String SLOW_ROUTES =
+            """
+            - route:
+                id: slow-route
+                from:
+                  uri: "direct:start"
+                  steps:
+                    - delay:
+                        constant: 30000
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService executor;
+    private CamelContextPool contextPool;
+    private ExecutionWatchdog watchdog;
+    private ExecutionSessionManager sessionManager;
+    private CodeExecutorService service;
+
+    @BeforeEach
+    void setUp() {
+        executor = CodeExecutorService.newExecutionExecutor();
+        contextPool = CamelContextPool.disabled();
+        sessionManager = new ExecutionSessionManager(1, Duration.ofMinutes(1), contextPool::release);
+        service = newService(AdaptiveConcurrencyLimiter.unlimited(), Duration.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        watchdog.close();
+        sessionManager.close();
+        executor.shutdownNow();
+    }
+
+    private CodeExecutorService newService(AdaptiveConcurrencyLimiter limiter, Duration executionTimeout) {
+        if (watchdog != null) {
+            watchdog.close();
+        }
+        watchdog = new ExecutionWatchdog(executionTimeout);
+        return new CodeExecutorService(
+                null,
+                tempDir,
+                null,
+                contextPool,
+                new RouteCache(0, contextPool),
+                true,
+                executor,
+                limiter,
+                watchdog,
+                4,
+                2,
+                sessionManager);
+    }
+
+    private static CodeExecutionRequest request(String code, String body) {
+        return CodeExecutionRequest.newBuilder()
+                .setUri("test://routes")
+                .setCode(code)
+                .setBody(body)
+                .build();
+    }
+
+    @Test
+    void repliesInOrderAndCompletes() throws Exception {
+        RecordingObserver observer = new RecordingObserver();
+        service.executeCode(request(ROUTES, "World"), observer);
+
+        assertTrue(observer.await());
+        List<CodeExecutionReply> replies = observer.replies;
+
+        CodeExecutionReply result = replies.get(replies.size() - 2);
+        assertEquals(OutputType.OUTPUT_TYPE_STDOUT, result.getOutputType());
+        assertEquals(List.of("Hello World"), result.getContentList());
+
+        CodeExecutionReply completion = replies.get(replies.size() - 1);
+        assertEquals(OutputType.OUTPUT_TYPE_COMPLETION, completion.getOutputType());
+        assertEquals(ExecutionStatus.EXECUTION_STATUS_COMPLETED, completion.getStatus());
+        assertEquals(0, completion.getExitCode());
+
+        for (CodeExecutionReply reply : replies.subList(0, replies.size() - 2)) {
+            assertEquals(OutputType.OUTPUT_TYPE_STATUS, reply.getOutputType());
+        }
+        assertEquals(
+                List.of("Routes are now executing"),
+                replies.get(replies.size() - 3).getContentList());
+    }
+
+    @Test
+    void loadsRoutesUsingRelativeFilesFromAWorkspace() throws Exception {
+        RecordingObserver observer = new RecordingObserver();
+        service.executeCode(
+                request(
+                        """
+                        - route:
+                            id: file-route
+                            from:
+                              uri: "direct:start"
+                              steps:
+                                - setBody:
+                                    constant: "file:data/in"
+                        """,
+                        "World"),
+                observer);
+
+        assertTrue(observer.await());
+        assertEquals(List.of("Creating workspace"), observer.replies.get(0).getContentList());
+        assertEquals(
+                List.of("file:data/in"),
+                observer.replies.get(observer.replies.size() - 2).getContentList());
+    }
+
+    @Test
+    void detectsRoutesThatNeedAWorkspace() {
+        assertTrue(CodeExecutorService.needsWorkspace("uri: \"file:data/in\""));
+        assertTrue(CodeExecutorService.needsWorkspace("uri: file://target/out?fileName=a.txt"));
+        assertTrue(CodeExecutorService.needsWorkspace("script: resource:file:./transform.groovy"));
+        assertTrue(CodeExecutorService.needsWorkspace("uri: \"file:{{dir}}\""));
+        assertFalse(CodeExecutorService.needsWorkspace("uri: \"file:/tmp/in\""));
+        assertFalse(CodeExecutorService.needsWorkspace("uri: file:///tmp/in"));
+        assertFalse(CodeExecutorService.needsWorkspace("script: resource:classpath:transform.groovy"));
+        assertFalse(CodeExecutorService.needsWorkspace("uri: \"sftp-file:data\""));
+        assertFalse(CodeExecutorService.needsWorkspace(ROUTES));
+        assertFalse(CodeExecutorService.needsWorkspace(null));
+    }
+
+    @Test
+    void streamsChunkedReplies() throws Exception {
+        CancellableObserver observer = new CancellableObserver();
+        service.executeCode(
+                CodeExecutionRequest.newBuilder()
+                        .setUri("test://routes")
+                        .setCode(ROUTES)
+                        .setBody("chunked world")
+                        .putArguments(CodeExecutorService.ARG_OUTPUT_MODE, CodeExecutorService.OUTPUT_MODE_CHUNKED)
+                        .build(),
+                observer);
+
+        assertTrue(observer.delegate.await());
+        assertTrue(observer.completed);
+
+        StringBuilder output = new StringBuilder();
+        observer.replies.stream()
+                .filter(reply -> reply.getOutputType() == OutputType.OUTPUT_TYPE_STDOUT)
+                .forEach(reply -> {
+                    assertTrue(reply.getContentList().get(0).length() <= 4);
+                    output.append(reply.getContentList().get(0));
+                });
+        assertEquals("Hello chunked world", output.toString());
+
+        CodeExecutionReply last = observer.replies.get(observer.replies.size() - 1);
+        assertEquals(OutputType.OUTPUT_TYPE_COMPLETION, last.getOutputType());
+        assertEquals(0, last.getExitCode());
+    }
+
+    @Test
+    void chunkedRepliesWaitForTransportReadiness() throws Exception {
+        CancellableObserver observer = new CancellableObserver();
+        observer.ready = false;
+        service.executeCode(
+                CodeExecutionRequest.newBuilder()
+                        .setUri("test://routes")
+                        .setCode(ROUTES)
+                        .setBody("chunked world")
+                        .putArguments(CodeExecutorService.ARG_OUTPUT_MODE, CodeExecutorService.OUTPUT_MODE_CHUNKED)
+                        .build(),
+                observer);
+
+        assertTrue(observer.awaitReply("Routes are now executing"));
+        Thread.sleep(500);
+        assertTrue(
+                observer.replies.stream().noneMatch(reply -> reply.getOutputType() == OutputType.OUTPUT_TYPE_STDOUT));
+
+        observer.ready = true;
+        observer.onReadyHandler.run();
+
+        assertTrue(observer.delegate.await());
+        assertTrue(observer.completed);
+    }
+
+    @Test
+    void runsBatchAgainstLoadedRoutes() throws Exception {
+        RecordingObserver observer = new RecordingObserver();
+        service.executeCode(
+                CodeExecutionRequest.newBuilder()
+                        .setUri("test://routes")
+                        .setCode(ROUTES)
+                        .putArguments(CodeExecutorService.ARG_BODIES, "[\"a\", \"b\", \"c\", \"d\", \"e\"]")
+                        .putArguments(CodeExecutorService.ARG_PARALLELISM, "4")
+                        .build(),
+                observer);
+
+        assertTrue(observer.await());
+
+        Map<String, String> results = new HashMap<>();
+        observer.replies.stream()
+                .filter(reply -> reply.getOutputType() == OutputType.OUTPUT_TYPE_STDOUT)
+                .forEach(reply -> results.put(
+                        reply.getContentList().get(0), reply.getContentList().get(1)));
+        assertEquals(Map.of("0", "Hello a", "1", "Hello b", "2", "Hello c", "3", "Hello d", "4", "Hello e"), results);
+
+        CodeExecutionReply last = observer.replies.get(observer.replies.size() - 1);
+        assertEquals(OutputType.OUTPUT_TYPE_COMPLETION, last.getOutputType());
+        assertEquals(0, last.getExitCode());
+    }
+
+    @Test
+    void batchReportsFailedItems() throws Exception {
+        RecordingObserver observer = new RecordingObserver();
+        service.executeCode(
+                CodeExecutionRequest.newBuilder()
+                        .setUri("test://routes")
+                        .setCode(FAILING_ROUTES)
+                        .putArguments(CodeExecutorService.ARG_BODIES, "- a\n- b\n")
+                        .build(),
+                observer);
+
+        assertTrue(observer.await());
+        assertEquals(
+                2,
+                observer.replies.stream()
+                        .filter(reply -> reply.getOutputType() == OutputType.OUTPUT_TYPE_STDERR)
+                        .count());
+
+        CodeExecutionReply last = observer.replies.get(observer.replies.size() - 1);
+        assertEquals(OutputType.OUTPUT_TYPE_COMPLETION, last.getOutputType());
+        assertEquals(2, last.getExitCode());
+    }
+
+    @Test
+    void rejectsMalformedBatch() throws Exception {
+        RecordingObserver observer = new RecordingObserver();
+        service.executeCode(
+                CodeExecutionRequest.newBuilder()
+                        .setUri("test://routes")
+                        .setCode(ROUTES)
+                        .putArguments(CodeExecutorService.ARG_BODIES, "{\"not\": \"a list\"}")
+                        .build(),
+                observer);
+
+        assertTrue(observer.await());
+        assertEquals(2, observer.replies.size());
+        assertEquals(
+                ExecutionStatus.EXECUTION_STATUS_PENDING,
+                observer.replies.get(0).getStatus());
+        assertEquals(1, observer.replies.get(1).getExitCode());
+    }
+
+    @Test
+    void reportsRouteFailure() throws Exception {
+        RecordingObserver observer = new RecordingObserver();
+        service.executeCode(request(FAILING_ROUTES, "World"), observer);
+
+        assertTrue(observer.await());
+        CodeExecutionReply last = observer.replies.get(observer.replies.size() - 1);
+        assertEquals(OutputType.OUTPUT_TYPE_STDERR, last.getOutputType());
+        assertEquals(ExecutionStatus.EXECUTION_STATUS_FAILED, last.getStatus());
+        assertEquals(2, last.getExitCode());
+    }
+
+    @Test
+    void deploysInvokesAndClosesSessions() throws Exception {
+        RecordingObserver deploy = new RecordingObserver();
+        service.executeCode(
+                CodeExecutionRequest.newBuilder()
+                        .setUri("test://routes")
+                        .setCode(ROUTES)
+                        .putArguments(CodeExecutorService.ARG_SESSION_ACTION, CodeExecutorService.SESSION_ACTION_DEPLOY)
+                        .build(),
+                deploy);
+
+        assertTrue(deploy.await());
+        assertEquals(0, deploy.replies.get(deploy.replies.size() - 1).getExitCode());
+        String sessionId =
+                deploy.replies.get(deploy.replies.size() - 2).getContentList().get(0);
+        assertEquals(1, sessionManager.size());
+
+        for (String body : List.of("first", "second")) {
+            RecordingObserver invoke = new RecordingObserver();
+            service.executeCode(sessionRequest(CodeExecutorService.SESSION_ACTION_INVOKE, sessionId, body), invoke);
+
+            assertTrue(invoke.await());
+            assertEquals(
+                    List.of("Hello " + body),
+                    invoke.replies.get(invoke.replies.size() - 2).getContentList());
+            assertEquals(0, invoke.replies.get(invoke.replies.size() - 1).getExitCode());
+        }
+
+        RecordingObserver close = new RecordingObserver();
+        service.executeCode(sessionRequest(CodeExecutorService.SESSION_ACTION_CLOSE, sessionId, ""), close);
+        assertTrue(close.await());
+        assertEquals(0, close.replies.get(0).getExitCode());
+        assertEquals(0, sessionManager.size());
+
+        RecordingObserver closed = new RecordingObserver();
+        service.executeCode(sessionRequest(CodeExecutorService.SESSION_ACTION_INVOKE, sessionId, "late"), closed);
+        assertTrue(closed.await());
+        assertEquals(1, closed.replies.get(closed.replies.size() - 1).getExitCode());
+    }
+
+    @Test
+    void rejectsDeploymentsBeyondTheSessionLimit() throws Exception {
+        for (int expectedExitCode : new int[] {0, 1}) {
+            RecordingObserver deploy = new RecordingObserver();
+            service.executeCode(
+                    CodeExecutionRequest.newBuilder()
+                            .setUri("test://routes")
+                            .setCode(ROUTES)
+                            .putArguments(
+                                    CodeExecutorService.ARG_SESSION_ACTION, CodeExecutorService.SESSION_ACTION_DEPLOY)
+                            .build(),
+                    deploy);
+
+            assertTrue(deploy.await());
+            assertEquals(
+                    expectedExitCode,
+                    deploy.replies.get(deploy.replies.size() - 1).getExitCode());
+        }
+        assertEquals(1, sessionManager.size());
+    }
+
+    private static CodeExecutionRequest sessionRequest(String action, String sessionId, String body) {
+        return CodeExecutionRequest.newBuilder()
+                .setUri("test://routes")
+                .setBody(body)
+                .putArguments(CodeExecutorService.ARG_SESSION_ACTION, action)
+                .putArguments(CodeExecutorService.ARG_SESSION_ID, sessionId)
+                .build();
+    }
+
+    @Test
+    void reportsInvalidRequest() throws Exception {
+        RecordingObserver observer = new RecordingObserver();
+        service.executeCode(request(" ", ""), observer);
+
+        assertTrue(observer.await());
+        assertEquals(2, observer.replies.size());
+        assertEquals(
+                List.of("Routes received, loading them from memory"),
+                observer.replies.get(0).getContentList());
+        assertEquals(
+                ExecutionStatus.EXECUTION_STATUS_PENDING,
+                observer.replies.get(0).getStatus());
+        assertEquals(1, observer.replies.get(1).getExitCode());
+        assertEquals(
+                ExecutionStatus.EXECUTION_STATUS_FAILED, observer.replies.get(1).getStatus());
+    }
+
+    @Test
+    void rejectsWhenConcurrencyLimitIsReached() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 0);
+        AdaptiveConcurrencyLimiter.Permit busy = limiter.acquire().join();
+        service = newService(limiter, Duration.ZERO);
+
+        RecordingObserver observer = new RecordingObserver();
+        service.executeCode(request(ROUTES, "World"), observer);
+
+        assertTrue(observer.await());
+        assertTrue(observer.replies.isEmpty());
+        assertEquals(
+                Status.Code.RESOURCE_EXHAUSTED,
+                Status.fromThrowable(observer.error).getCode());
+        busy.release();
+    }
+
+    @Test
+    void abortsExecutionsThatRunOutOfTime() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 0);
+        service = newService(limiter, Duration.ofMillis(500));
+
+        RecordingObserver observer = new RecordingObserver();
+        service.executeCode(request(SLOW_ROUTES, "World"), observer);
+
+        assertTrue(observer.await());
+        CodeExecutionReply last = observer.replies.get(observer.replies.size() - 1);
+        assertEquals(ExecutionStatus.EXECUTION_STATUS_FAILED, last.getStatus());
+        assertEquals(124, last.getExitCode());
+        assertEquals(1, watchdog.getTimeoutCount());
+
+        // The capacity of the timed out execution is given back once its context is torn down
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (limiter.getStats().inFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, limiter.getStats().inFlight());
+    }
+
+    @Test
+    void abortsExecutionsCancelledByTheClient() throws Exception {
+        CancellableObserver observer = new CancellableObserver();
+        service.executeCode(request(SLOW_ROUTES, "World"), observer);
+
+        assertTrue(observer.awaitReply("Routes are now executing"));
+        observer.cancel();
+
+        assertTrue(observer.await());
+        assertFalse(observer.completed);
+        observer.replies.forEach(reply -> assertEquals(OutputType.OUTPUT_TYPE_STATUS, reply.getOutputType()));
+    }
+
+    private static class RecordingObserver implements StreamObserver<CodeExecutionReply> {
+        final List<CodeExecutionReply> replies = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Throwable error;
+        volatile boolean completed;
+
+        @Override
+        public void onNext(CodeExecutionReply value) {
+            replies.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+            done.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return done.await(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static final class CancellableObserver extends ServerCallStreamObserver<CodeExecutionReply> {
+        private final RecordingObserver delegate = new RecordingObserver();
+        private final List<CodeExecutionReply> replies = delegate.replies;
+        private volatile Runnable onCancelHandler;
+        private volatile Runnable onReadyHandler;
+        private volatile boolean ready = true;
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+
+        void cancel() {
+            cancelled = true;
+            onCancelHandler.run();
+            // The pipeline does not reply to a cancelled call, so wait for the cleanup to be over
+            delegate.done.countDown();
+        }
+
+        boolean awaitReply(String content) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (System.nanoTime() < deadline) {
+                if (replies.stream().anyMatch(reply -> reply.getContentList().contains(content))) {
+                    return true;
+                }
+                Thread.sleep(20);
+            }
+            return false;
+        }
+
+        boolean await() throws InterruptedException {
+            boolean done = delegate.await();
+            // Give the cleanup a moment to run, any reply sent afterwards would fail the test
+            Thread.sleep(500);
+            return done;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+            this.onCancelHandler = onCancelHandler;
+        }
+
+        @Override
+        public void setCompression(String compression) {}
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        @Override
+        public void request(int count) {}
+
+        @Override
+        public void setMessageCompression(boolean enable) {}
+
+        @Override
+        public void disableAutoInboundFlowControl() {}
+
+        @Override
+        public void onNext(CodeExecutionReply value) {
+            delegate.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            delegate.onError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+            delegate.onCompleted();
+        }
+    }
+}
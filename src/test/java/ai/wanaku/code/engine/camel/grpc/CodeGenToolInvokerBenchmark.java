@@ -0,0 +1,114 @@
+package ai.wanaku.code.engine.camel.grpc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import io.grpc.stub.StreamObserver;
+import ai.wanaku.code.engine.camel.codegen.CodeGenResourceLoader;
+import ai.wanaku.code.engine.camel.codegen.CodeGenToolService;
+import ai.wanaku.code.engine.camel.codegen.tools.SearchServicesTool;
+import ai.wanaku.core.exchange.v1.ToolInvokeReply;
+import ai.wanaku.core.exchange.v1.ToolInvokeRequest;
+
+/**
+ * Compares serving searchServicesTool from its prebuilt reply with rebuilding the reply on every call,
+ * as the service did before replies were precomputed.
+ *
+ * <p>Run after {@code mvn test-compile} with the test class path, adding {@code -prof gc} to compare
+ * allocations:
+ *
+ * <pre>
+ * mvn dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     org.openjdk.jmh.Main CodeGenToolInvokerBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodeGenToolInvokerBenchmark {
+
+    private Path packageDir;
+    private CodeGenResourceLoader resourceLoader;
+    private CodeGenToolInvokerService service;
+    private ToolInvokeRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        packageDir = Files.createTempDirectory("codegen-benchmark");
+        Files.createDirectories(packageDir.resolve("kamelets"));
+        Files.createDirectories(packageDir.resolve("templates"));
+        Files.writeString(
+                packageDir.resolve("config.properties"),
+                "available.services=kamelet:http-source,kamelet:kafka-sink,kamelet:log-action,"
+                        + "kamelet:aws-s3-source,kamelet:slack-sink,kamelet:timer-source");
+        Files.writeString(packageDir.resolve("templates/orchestration.txt"), "Template content");
+
+        resourceLoader = CodeGenResourceLoader.load(packageDir);
+        service = new CodeGenToolInvokerService(new CodeGenToolService(resourceLoader));
+        request = new ToolInvokeRequest("codegen://searchServicesTool", Map.of());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(packageDir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void prebuiltReply(Blackhole blackhole) {
+        service.invokeTool(request, new BlackholeObserver(blackhole));
+    }
+
+    @Benchmark
+    public void rebuiltReply(Blackhole blackhole) {
+        Map<String, String> arguments = request.getArgumentsMap().entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        blackhole.consume(arguments);
+
+        List<String> services = resourceLoader.getConfig().getAvailableServices();
+        String content = String.format(SearchServicesTool.CONTEXT_TEMPLATE, String.join("\n", services));
+        blackhole.consume(
+                ToolInvokeReply.newBuilder().addAllContent(List.of(content)).build());
+    }
+
+    private record BlackholeObserver(Blackhole blackhole) implements StreamObserver<ToolInvokeReply> {
+        @Override
+        public void onNext(ToolInvokeReply value) {
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+
+        @Override
+        public void onCompleted() {}
+    }
+}
@@ -0,0 +1,162 @@
+package ai.wanaku.code.engine.camel.grpc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import io.grpc.stub.StreamObserver;
+import ai.wanaku.code.engine.camel.codegen.CodeGenResourceLoader;
+import ai.wanaku.code.engine.camel.codegen.CodeGenToolService;
+import ai.wanaku.core.exchange.v1.ToolInvokeReply;
+import ai.wanaku.core.exchange.v1.ToolInvokeRequest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for CodeGenToolInvokerService.
+ */
+class CodeGenToolInvokerServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CodeGenToolInvokerService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path packageDir = tempDir.resolve("package");
+        Files.createDirectories(packageDir.resolve("kamelets"));
+        Files.createDirectories(packageDir.resolve("templates"));
+
+        Files.writeString(packageDir.resolve("config.properties"), "available.services=kamelet:test-service");
+        Files.writeString(
+                packageDir.resolve("kamelets/test.kamelet.yaml"),
+                """
+                apiVersion: camel.apache.org/v1alpha1
+                kind: Kamelet
+                metadata:
+                  name: test
+                """);
+        Files.writeString(packageDir.resolve("templates/orchestration.txt"), "Test template content");
+
+        service = new CodeGenToolInvokerService(new CodeGenToolService(CodeGenResourceLoader.load(packageDir)));
+    }
+
+    private static RecordingObserver invoke(CodeGenToolInvokerService service, String uri, Map<String, String> args) {
+        RecordingObserver observer = new RecordingObserver();
+        service.invokeTool(new ToolInvokeRequest(uri, args), observer);
+        return observer;
+    }
+
+    @Test
+    void servesPrebuiltReplies() {
+        RecordingObserver first = invoke(service, "codegen://searchServicesTool", Map.of());
+        RecordingObserver second = invoke(service, "myservice://searchServicesTool", Map.of());
+
+        assertTrue(first.completed);
+        assertEquals(1, first.replies.size());
+        assertTrue(first.replies.get(0).getContentList().get(0).contains("kamelet:test-service"));
+        assertSame(first.replies.get(0), second.replies.get(0));
+
+        RecordingObserver template = invoke(service, "codegen://generateOrchestrationCode", Map.of());
+        assertEquals(List.of("Test template content"), template.replies.get(0).getContentList());
+    }
+
+    @Test
+    void searchesWithQueries() {
+        RecordingObserver all = invoke(service, "codegen://searchServicesTool", Map.of());
+        RecordingObserver query = invoke(service, "codegen://searchServicesTool", Map.of("query", "test"));
+
+        assertTrue(query.completed);
+        assertNotSame(all.replies.get(0), query.replies.get(0));
+        assertTrue(query.replies.get(0).getContentList().get(0).endsWith("kamelet:test-service"));
+    }
+
+    @Test
+    void servesTheCurrentPackage() throws IOException {
+        Path packageDir = tempDir.resolve("package");
+        AtomicReference<CodeGenToolService> current = new AtomicReference<>();
+        CodeGenToolInvokerService invoker = new CodeGenToolInvokerService(current::get);
+        assertNotNull(invoke(invoker, "codegen://searchServicesTool", Map.of()).error);
+
+        current.set(new CodeGenToolService(CodeGenResourceLoader.load(packageDir)));
+        assertTrue(invoke(invoker, "codegen://searchServicesTool", Map.of())
+                .replies
+                .get(0)
+                .getContentList()
+                .get(0)
+                .endsWith("kamelet:test-service"));
+
+        // A template changed in place is served as it is now
+        Files.writeString(packageDir.resolve("templates/orchestration.txt"), "Changed template content");
+        assertEquals(
+                List.of("Changed template content"),
+                invoke(invoker, "codegen://generateOrchestrationCode", Map.of())
+                        .replies
+                        .get(0)
+                        .getContentList());
+
+        // A registration loads the package again, the new services are listed at once
+        Files.writeString(packageDir.resolve("config.properties"), "available.services=kamelet:other-service");
+        current.set(new CodeGenToolService(CodeGenResourceLoader.load(packageDir)));
+        assertTrue(invoke(invoker, "codegen://searchServicesTool", Map.of())
+                .replies
+                .get(0)
+                .getContentList()
+                .get(0)
+                .endsWith("kamelet:other-service"));
+    }
+
+    @Test
+    void matchesToolNamesExactly() {
+        assertNotNull(service.staticReply("codegen://searchServicesTool"));
+        assertNotNull(service.staticReply("codegen://searchServicesTool/"));
+        assertNull(service.staticReply("codegen://searchServicesToolX"));
+        assertNull(service.staticReply("codegen://search"));
+        assertNull(service.staticReply("codegen://readKamelet"));
+        assertNull(service.staticReply("searchServicesTool"));
+    }
+
+    @Test
+    void invokesToolsWithArguments() {
+        RecordingObserver observer = invoke(service, "codegen://readKamelet", Map.of("name", "test"));
+
+        assertTrue(observer.completed);
+        assertTrue(observer.replies.get(0).getContentList().get(0).contains("name: test"));
+
+        RecordingObserver missing = invoke(service, "codegen://readKamelet", Map.of("name", "missing"));
+        assertNotNull(missing.error);
+    }
+
+    private static class RecordingObserver implements StreamObserver<ToolInvokeReply> {
+        final List<ToolInvokeReply> replies = new ArrayList<>();
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onNext(ToolInvokeReply value) {
+            replies.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ai.wanaku.code.engine.camel.limiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for AdaptiveConcurrencyLimiter.
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void unlimitedLimiterAdmitsEverything() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.unlimited();
+
+        assertFalse(limiter.isEnabled());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.acquire().isDone());
+        }
+    }
+
+    @Test
+    void queuesAndRejectsBeyondLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 2, 1);
+
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> first = limiter.acquire();
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> second = limiter.acquire();
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> queued = limiter.acquire();
+
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertNotNull(queued);
+        assertFalse(queued.isDone());
+        assertNull(limiter.acquire());
+        assertEquals(1, limiter.getStats().rejected());
+
+        first.join().release();
+        assertTrue(queued.isDone());
+        assertEquals(2, limiter.getStats().inFlight());
+        assertEquals(0, limiter.getStats().queued());
+    }
+
+    @Test
+    void cancelledWaiterDoesNotHoldSlot() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 2);
+
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> running = limiter.acquire();
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> cancelled = limiter.acquire();
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> waiting = limiter.acquire();
+        cancelled.cancel(false);
+
+        running.join().release();
+        assertTrue(waiting.isDone());
+        assertEquals(1, limiter.getStats().inFlight());
+    }
+
+    @Test
+    void cancelledWaiterLeavesQueue() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 1);
+
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> running = limiter.acquire();
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> cancelled = limiter.acquire();
+        assertEquals(1, limiter.getStats().queued());
+        cancelled.cancel(false);
+        assertEquals(0, limiter.getStats().queued());
+
+        // The freed queue slot is available to the next execution instead of rejecting it
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> waiting = limiter.acquire();
+        assertNotNull(waiting);
+        assertEquals(0, limiter.getStats().rejected());
+
+        running.join().release();
+        assertTrue(waiting.isDone());
+        assertEquals(1, limiter.getStats().inFlight());
+    }
+
+    @Test
+    void permitIsReleasedOnlyOnce() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 0);
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().join();
+        permit.release();
+        permit.release();
+
+        assertEquals(0, limiter.getStats().inFlight());
+    }
+
+    @Test
+    void limitShrinksWhenLatencyGrows() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 20, 0);
+
+        // Establish a fast baseline at full load
+        runBatch(limiter, 20, 1);
+        int before = limiter.getLimit();
+
+        for (int i = 0; i < 10; i++) {
+            runBatch(limiter, limiter.getLimit(), 20);
+        }
+
+        assertTrue(limiter.getLimit() < before, "limit should shrink: " + limiter.getLimit() + " < " + before);
+    }
+
+    @Test
+    void limitGrowsWhileLatencyIsStable() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 50, 0);
+
+        for (int i = 0; i < 10; i++) {
+            runBatch(limiter, limiter.getLimit(), 2);
+        }
+
+        assertTrue(limiter.getLimit() > 4, "limit should grow: " + limiter.getLimit());
+    }
+
+    private static void runBatch(AdaptiveConcurrencyLimiter limiter, int count, long sleepMillis)
+            throws InterruptedException {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<AdaptiveConcurrencyLimiter.Permit> future = limiter.acquire();
+            if (future != null && future.isDone()) {
+                permits.add(future.join());
+            }
+        }
+        Thread.sleep(sleepMillis);
+        permits.forEach(AdaptiveConcurrencyLimiter.Permit::release);
+    }
+}
@@ -0,0 +1,88 @@
+package ai.wanaku.code.engine.camel.session;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import ai.wanaku.code.engine.camel.WanakuCamelManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for ExecutionSessionManager.
+ */
+class ExecutionSessionManagerTest {
+
+    private final AtomicInteger released = new AtomicInteger();
+    private ExecutionSessionManager sessions;
+    private WanakuCamelManager manager;
+
+    @AfterEach
+    void tearDown() {
+        if (sessions != null) {
+            sessions.close();
+        }
+        if (manager != null) {
+            manager.stop();
+        }
+    }
+
+    @Test
+    void abortsTheContextOnceTheOtherInvocationsComplete() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        manager = new WanakuCamelManager("", null);
+        manager.getCamelContext().getRegistry().bind("gate", (Processor) exchange -> {
+            started.countDown();
+            assertTrue(proceed.await(10, TimeUnit.SECONDS));
+        });
+        manager.loadRoutesFromString(
+                """
+                - route:
+                    id: session-route
+                    from:
+                      uri: "direct:start"
+                      steps:
+                        - process:
+                            ref: gate
+                        - setBody:
+                            simple: "Hello ${body}"
+                """);
+
+        sessions = new ExecutionSessionManager(1, Duration.ofMinutes(1), m -> released.incrementAndGet());
+        String id = sessions.open(manager);
+
+        // The first invocation is running when the second one is aborted
+        WanakuCamelManager running = sessions.acquire(id);
+        CompletableFuture<String> reply = CompletableFuture.supplyAsync(() -> {
+            try (ProducerTemplate template = running.getCamelContext().createProducerTemplate()) {
+                return template.requestBody("direct:start", "World", String.class);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        sessions.acquire(id);
+        sessions.release(id, true);
+
+        assertThrows(IllegalArgumentException.class, () -> sessions.acquire(id));
+        assertTrue(manager.getCamelContext().isStarted());
+        assertEquals(1, sessions.size());
+
+        proceed.countDown();
+        assertEquals("Hello World", reply.get(10, TimeUnit.SECONDS));
+
+        // The last invocation gives the context back, which is aborted rather than released
+        sessions.release(id, false);
+        assertEquals(0, sessions.size());
+        assertTrue(manager.getCamelContext().isStopped());
+        assertEquals(0, released.get());
+    }
+}